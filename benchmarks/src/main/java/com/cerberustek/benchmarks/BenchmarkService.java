@@ -0,0 +1,58 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+import com.cerberustek.service.CerberusService;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service without any function, owning the benchmark threads.
+ */
+public class BenchmarkService implements CerberusService {
+
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void stop() {}
+
+    @Override
+    public Class<? extends CerberusService> serviceClass() {
+        return BenchmarkService.class;
+    }
+
+    @Override
+    public Collection<Thread> getThreads() {
+        return threads;
+    }
+
+    public void own(Thread thread) {
+        threads.add(thread);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+/**
+ * Histogram of latencies in nanoseconds with logarithmic buckets.
+ *
+ * Every power of two is split into 32 linear buckets, so percentiles are
+ * accurate to about 3% over the whole range of a long. Recording never
+ * allocates. This class is not thread safe, every thread records into
+ * its own histogram and the histograms are merged at the end.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long total;
+    private long max;
+
+    void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts[index(nanos)]++;
+        total++;
+        if (nanos > max)
+            max = nanos;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    /**
+     * Returns the latency below which the specified fraction of all
+     * recorded latencies lie.
+     *
+     * @param fraction fraction between 0 and 1, such as 0.99
+     * @return latency in nanoseconds
+     */
+    long percentile(double fraction) {
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(middle(i), max);
+        }
+        return max;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long middle(int index) {
+        int group = index >>> SUB_BITS;
+        long low = index & (SUB_BUCKETS - 1);
+        if (group == 0)
+            return low;
+        int shift = group - 1;
+        return ((SUB_BUCKETS + low) << shift) + ((1L << shift) >>> 1);
+    }
+}
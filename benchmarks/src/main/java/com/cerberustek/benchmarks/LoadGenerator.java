@@ -0,0 +1,381 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.logger.Level;
+import com.cerberustek.service.CerberusService;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of the logging path, shaped like a production server.
+ *
+ * Simulates a number of services, each with a number of threads that
+ * log through {@link CerberusRegistry} at a configurable mix of levels
+ * and a fixed rate per thread. After a warm up phase it measures for a
+ * fixed time and reports the sustained throughput, the latency of the
+ * log calls, the GC pauses and the amount of data passed to the log
+ * archive. With a fixed rate, latencies are measured from the time a call
+ * was scheduled to start, so a stalled logger shows up in the latencies
+ * of all calls that had to wait for it.
+ *
+ * The report is printed to {@code System.err}, so the console output of
+ * the logger can be discarded by redirecting {@code System.out}. When a
+ * budget is given and exceeded, the process exits with status 1, which
+ * makes the load test usable as a release gate.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.cerberustek.benchmarks.LoadGenerator
+ *      --services 8 --threads 4 --rate 1000 --mix INFO=80,DEBUG=15,WARNING=4,CRITICAL=1
+ *      --warmup 10 --duration 60 --console false --max-p99 500
+ * </pre>
+ *
+ * Options:
+ * <ul>
+ *     <li>{@code --services} simulated services (default 4)</li>
+ *     <li>{@code --threads} threads per service (default 4)</li>
+ *     <li>{@code --rate} log calls per second and thread, 0 for as fast
+ *     as possible (default 1000)</li>
+ *     <li>{@code --mix} weights of the levels (default
+ *     INFO=80,DEBUG=15,WARNING=4,CRITICAL=1)</li>
+ *     <li>{@code --warmup} and {@code --duration} in seconds (default
+ *     10 and 30)</li>
+ *     <li>{@code --console} write log lines to the console (default
+ *     true)</li>
+ *     <li>{@code --log-rate} per call site limit of the logger, 0 to
+ *     disable it (default 0)</li>
+ *     <li>{@code --max-p99}, {@code --max-p999} budgets in microseconds
+ *     and {@code --min-throughput} budget in calls per second</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+    private static final int WARMUP = 0;
+    private static final int MEASURE = 1;
+    private static final int DONE = 2;
+
+    private static final int MESSAGES = 256;
+
+    private final int services;
+    private final int threadsPerService;
+    private final int rate;
+    private final Level[] levels;
+    private final int[] weights;
+    private final int totalWeight;
+
+    private volatile int phase = WARMUP;
+    private final LatencyHistogram gcPauses = new LatencyHistogram();
+
+    private LoadGenerator(int services, int threadsPerService, int rate, Map<Level, Integer> mix) {
+        this.services = services;
+        this.threadsPerService = threadsPerService;
+        this.rate = rate;
+        levels = mix.keySet().toArray(new Level[0]);
+        weights = new int[levels.length];
+        int sum = 0;
+        for (int i = 0; i < levels.length; i++) {
+            sum += mix.get(levels[i]);
+            weights[i] = sum;
+        }
+        totalWeight = sum;
+        if (totalWeight <= 0)
+            throw new IllegalArgumentException("The level mix needs a positive weight!");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        System.setProperty("de.cerberus.log_console", options.getOrDefault("console", "true"));
+        System.setProperty("de.cerberus.log_rate", options.getOrDefault("log-rate", "0"));
+
+        LoadGenerator generator = new LoadGenerator(
+                Integer.parseInt(options.getOrDefault("services", "4")),
+                Integer.parseInt(options.getOrDefault("threads", "4")),
+                Integer.parseInt(options.getOrDefault("rate", "1000")),
+                parseMix(options.getOrDefault("mix", "INFO=80,DEBUG=15,WARNING=4,CRITICAL=1")));
+        Report report = generator.run(
+                Integer.parseInt(options.getOrDefault("warmup", "10")),
+                Integer.parseInt(options.getOrDefault("duration", "30")));
+
+        PrintStream out = System.err;
+        report.print(out);
+
+        boolean failed = false;
+        if (options.containsKey("max-p99"))
+            failed |= report.exceeds(out, "p99", report.latencies.percentile(0.99),
+                    Long.parseLong(options.get("max-p99")));
+        if (options.containsKey("max-p999"))
+            failed |= report.exceeds(out, "p99.9", report.latencies.percentile(0.999),
+                    Long.parseLong(options.get("max-p999")));
+        if (options.containsKey("min-throughput")) {
+            double minimum = Double.parseDouble(options.get("min-throughput"));
+            if (report.throughput() < minimum) {
+                out.printf("BUDGET EXCEEDED: throughput %.0f/s is below %.0f/s%n", report.throughput(), minimum);
+                failed = true;
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private Report run(int warmupSeconds, int durationSeconds) throws Exception {
+        CerberusRegistry registry = CerberusRegistry.getInstanceNoTerminal();
+        listenForGarbageCollections();
+
+        ArrayList<Worker> workers = new ArrayList<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < services; s++) {
+            Set<Thread> owned = ConcurrentHashMap.newKeySet();
+            CerberusService service = createService(owned);
+            registry.registerService(service);
+            registry.requestStart(service.serviceClass());
+
+            for (int t = 0; t < threadsPerService; t++) {
+                Worker worker = new Worker(registry, s, t);
+                Thread thread = new Thread(worker, "Load " + s + "-" + t);
+                owned.add(thread);
+                workers.add(worker);
+                threads.add(thread);
+            }
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+
+        long archivedBefore = registry.getArchive().getArchivedBytes();
+        long start = System.nanoTime();
+        phase = MEASURE;
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        phase = DONE;
+        long end = System.nanoTime();
+        long archived = registry.getArchive().getArchivedBytes() - archivedBefore;
+
+        for (Thread thread : threads)
+            thread.join();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        for (Worker worker : workers)
+            latencies.add(worker.latencies);
+        synchronized (gcPauses) {
+            return new Report(services * threadsPerService, rate, end - start, latencies, gcPauses, archived);
+        }
+    }
+
+    /**
+     * Loads the service class through a new class loader, so each
+     * simulated service is registered under its own service class.
+     */
+    private static CerberusService createService(Collection<Thread> threads) throws Exception {
+        Class<?> type = new IsolatingLoader(LoadGenerator.class.getClassLoader()).loadClass(LoadService.class.getName());
+        return (CerberusService) type.getConstructor(Collection.class).newInstance(threads);
+    }
+
+    private void listenForGarbageCollections() {
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // Concurrent cycles do not stop the application threads
+            if (!(bean instanceof NotificationEmitter) || bean.getName().contains("Concurrent") ||
+                    bean.getName().contains("Cycles"))
+                continue;
+
+            ((NotificationEmitter) bean).addNotificationListener((notification, handback) -> {
+                if (phase != MEASURE || !notification.getType()
+                        .equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+                    return;
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                synchronized (gcPauses) {
+                    gcPauses.record(TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration()));
+                }
+            }, null, null);
+        }
+    }
+
+    private Level pick(SplittableRandom random) {
+        int value = random.nextInt(totalWeight);
+        for (int i = 0; i < weights.length; i++) {
+            if (value < weights[i])
+                return levels[i];
+        }
+        return levels[levels.length - 1];
+    }
+
+    /**
+     * Thread of a simulated service.
+     */
+    private class Worker implements Runnable {
+
+        private final CerberusRegistry registry;
+        private final String[] messages = new String[MESSAGES];
+        private final SplittableRandom random;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private Worker(CerberusRegistry registry, int service, int thread) {
+            this.registry = registry;
+            for (int i = 0; i < MESSAGES; i++)
+                messages[i] = "Service " + service + " thread " + thread + " handled request " + i;
+            random = new SplittableRandom(service * 1000L + thread);
+        }
+
+        @Override
+        public void run() {
+            long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+            long next = System.nanoTime();
+            int index = 0;
+
+            while (phase != DONE) {
+                long start;
+                if (interval > 0) {
+                    long now;
+                    while ((now = System.nanoTime()) < next)
+                        LockSupport.parkNanos(next - now);
+                    start = next;
+                    next += interval;
+                } else
+                    start = System.nanoTime();
+
+                registry.log(pick(random), messages[index++ & (MESSAGES - 1)]);
+
+                long end = System.nanoTime();
+                if (phase == MEASURE)
+                    latencies.record(end - start);
+            }
+        }
+    }
+
+    /**
+     * Results of a load test.
+     */
+    private static class Report {
+
+        private final int threads;
+        private final int rate;
+        private final long nanos;
+        private final LatencyHistogram latencies;
+        private final LatencyHistogram gcPauses;
+        private final long archivedBytes;
+
+        private Report(int threads, int rate, long nanos, LatencyHistogram latencies, LatencyHistogram gcPauses,
+                       long archivedBytes) {
+            this.threads = threads;
+            this.rate = rate;
+            this.nanos = nanos;
+            this.latencies = latencies;
+            this.gcPauses = gcPauses;
+            this.archivedBytes = archivedBytes;
+        }
+
+        private double seconds() {
+            return nanos / 1e9;
+        }
+
+        private double throughput() {
+            return latencies.count() / seconds();
+        }
+
+        private void print(PrintStream out) {
+            out.printf("threads:      %d at %s%n", threads, rate > 0 ? rate + " calls/s each" : "full speed");
+            out.printf("duration:     %.1f s%n", seconds());
+            out.printf("calls:        %d%n", latencies.count());
+            out.printf("throughput:   %.0f calls/s%n", throughput());
+            out.printf("latency:      p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                    latencies.percentile(0.5) / 1e3, latencies.percentile(0.99) / 1e3,
+                    latencies.percentile(0.999) / 1e3, latencies.max() / 1e3);
+            out.printf("gc pauses:    %d, p99 %.1f ms, max %.1f ms%n", gcPauses.count(),
+                    gcPauses.percentile(0.99) / 1e6, gcPauses.max() / 1e6);
+            out.printf("archive:      %.1f KiB/s%n", archivedBytes / 1024.0 / seconds());
+        }
+
+        private boolean exceeds(PrintStream out, String name, long nanos, long budgetMicros) {
+            if (nanos <= TimeUnit.MICROSECONDS.toNanos(budgetMicros))
+                return false;
+            out.printf("BUDGET EXCEEDED: %s latency %.1f us is above %d us%n", name, nanos / 1e3, budgetMicros);
+            return true;
+        }
+    }
+
+    /**
+     * Class loader defining its own copy of {@link LoadService}.
+     */
+    private static class IsolatingLoader extends ClassLoader {
+
+        private IsolatingLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(LoadService.class.getName()))
+                return super.loadClass(name, resolve);
+
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> type = findLoadedClass(name);
+                if (type == null) {
+                    try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        if (in == null)
+                            throw new ClassNotFoundException(name);
+                        byte[] bytes = in.readAllBytes();
+                        type = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                if (resolve)
+                    resolveClass(type);
+                return type;
+            }
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        HashMap<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length)
+                throw new IllegalArgumentException("Expected --option value, but got " + args[i]);
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static Map<Level, Integer> parseMix(String mix) {
+        EnumMap<Level, Integer> weights = new EnumMap<>(Level.class);
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.split("=");
+            if (pair.length != 2)
+                throw new IllegalArgumentException("Invalid level weight: " + entry);
+            weights.put(Level.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+}
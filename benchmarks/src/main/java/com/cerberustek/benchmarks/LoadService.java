@@ -0,0 +1,58 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+import com.cerberustek.service.CerberusService;
+
+import java.util.Collection;
+
+/**
+ * Service simulated by the {@link LoadGenerator}. The generator loads
+ * this class once per simulated service through its own class loader,
+ * so every instance has a distinct service class to be registered with.
+ */
+public class LoadService implements CerberusService {
+
+    private final Collection<Thread> threads;
+
+    public LoadService(Collection<Thread> threads) {
+        this.threads = threads;
+    }
+
+    @Override
+    public void start() {}
+
+    @Override
+    public void stop() {}
+
+    @Override
+    public Class<? extends CerberusService> serviceClass() {
+        return getClass();
+    }
+
+    @Override
+    public Collection<Thread> getThreads() {
+        return threads;
+    }
+}
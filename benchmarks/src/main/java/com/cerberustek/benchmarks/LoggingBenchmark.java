@@ -0,0 +1,92 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.logger.Level;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging through the registry at every level, with console output.
+ * Redirect the output of the benchmark, the forked VMs print every
+ * logged line.
+ *
+ * Rate limiting is disabled, so every distinct message is written. The
+ * repeated variant logs the same message over and over again, which
+ * measures the deduplication of the rate limiter instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dde.cerberus.log_rate=0")
+public class LoggingBenchmark {
+
+    private static final int MESSAGES = 1024;
+
+    @Param({ "INFO", "DEBUG", "FINE", "WARNING", "CRITICAL", "FATAL" })
+    public Level level;
+
+    private CerberusRegistry registry;
+    private final String[] messages = new String[MESSAGES];
+
+    @Setup
+    public void setup() {
+        registry = CerberusRegistry.getInstanceNoTerminal();
+        for (int i = 0; i < MESSAGES; i++)
+            messages[i] = "Benchmark message number " + i;
+    }
+
+    /**
+     * Per thread position in the prepared messages.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        private int next() {
+            return index = (index + 1) & (MESSAGES - 1);
+        }
+    }
+
+    @Benchmark
+    public void log(Cursor cursor) {
+        registry.log(level, messages[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void logContended(Cursor cursor) {
+        registry.log(level, messages[cursor.next()]);
+    }
+
+    @Benchmark
+    public void logRepeated() {
+        registry.log(level, "Repeated benchmark message");
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * Same as {@link LoggingBenchmark}, but without console output, which
+ * leaves the cost of formatting and storing log elements.
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Dde.cerberus.log_rate=0", "-Dde.cerberus.log_console=false" })
+public class QuietLoggingBenchmark extends LoggingBenchmark {
+}
@@ -0,0 +1,134 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.service.CerberusService;
+import com.cerberustek.service.ServiceHandle;
+import com.cerberustek.service.ServiceNotFoundException;
+import com.cerberustek.service.impl.MainService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service lookups of the registry. The contended variants run the same
+ * lookup on four threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dde.cerberus.log_console=false")
+public class RegistryBenchmark {
+
+    private CerberusRegistry registry;
+    private BenchmarkService service;
+    private ServiceHandle<MainService> handle;
+    private Thread unowned;
+
+    @Setup
+    public void setup() {
+        registry = CerberusRegistry.getInstanceNoTerminal();
+        service = registry.registerService(new BenchmarkService());
+        if (!registry.isRunning(BenchmarkService.class))
+            registry.requestStart(BenchmarkService.class);
+        unowned = new Thread(() -> {});
+        handle = registry.getHandle(MainService.class);
+    }
+
+    /**
+     * Makes each benchmark thread a thread of the benchmark service.
+     */
+    @State(Scope.Thread)
+    public static class OwnedThread {
+
+        private Thread thread;
+
+        @Setup
+        public void own(RegistryBenchmark benchmark) {
+            thread = Thread.currentThread();
+            benchmark.service.own(thread);
+        }
+    }
+
+    @Benchmark
+    public CerberusService getServiceByClass() {
+        return registry.getService(MainService.class);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CerberusService getServiceByClassContended() {
+        return registry.getService(MainService.class);
+    }
+
+    @Benchmark
+    public CerberusService getServiceByHandle() {
+        return handle.get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CerberusService getServiceByHandleContended() {
+        return handle.get();
+    }
+
+    @Benchmark
+    public CerberusService getServiceByThread(OwnedThread owned) {
+        return registry.getService(owned.thread);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CerberusService getServiceByThreadContended(OwnedThread owned) {
+        return registry.getService(owned.thread);
+    }
+
+    @Benchmark
+    public CerberusService getServiceByUnownedThread() {
+        try {
+            return registry.getService(unowned);
+        } catch (ServiceNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public CerberusService getServiceByName() {
+        return registry.getService("BenchmarkService");
+    }
+
+    @Benchmark
+    public CerberusService getServiceByPartialName() {
+        return registry.getService("benchmark");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CerberusService getServiceByNameContended() {
+        return registry.getService("BenchmarkService");
+    }
+}
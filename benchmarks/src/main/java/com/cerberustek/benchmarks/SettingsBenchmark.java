@@ -0,0 +1,115 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+import com.cerberustek.settings.Settings;
+import com.cerberustek.settings.impl.SettingsCodecs;
+import com.cerberustek.settings.impl.SettingsImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typed getters of the settings. The contended variants read on four
+ * threads while the values are not changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dde.cerberus.log_console=false")
+public class SettingsBenchmark {
+
+    private File file;
+    private Settings settings;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("cerberus-settings", ".properties");
+        settings = new SettingsImpl(file, false);
+        settings.init();
+        settings.setBoolean("boolean", true);
+        settings.setInteger("integer", 42);
+        settings.setLong("long", 1L << 40);
+        settings.setFloat("float", 0.5f);
+        settings.setDouble("double", 0.25);
+        settings.setString("string", "benchmark");
+        settings.setObject("ints", SettingsCodecs.INT_ARRAY, new int[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!file.delete())
+            file.deleteOnExit();
+    }
+
+    @Benchmark
+    public boolean getBoolean() {
+        return settings.getBoolean("boolean", false);
+    }
+
+    @Benchmark
+    public int getInteger() {
+        return settings.getInteger("integer", 0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int getIntegerContended() {
+        return settings.getInteger("integer", 0);
+    }
+
+    @Benchmark
+    public long getLong() {
+        return settings.getLong("long", 0);
+    }
+
+    @Benchmark
+    public float getFloat() {
+        return settings.getFloat("float", 0);
+    }
+
+    @Benchmark
+    public double getDouble() {
+        return settings.getDouble("double", 0);
+    }
+
+    @Benchmark
+    public String getString() {
+        return settings.getString("string", null);
+    }
+
+    @Benchmark
+    public int[] getObject() {
+        return settings.getObject("ints", SettingsCodecs.INT_ARRAY, null);
+    }
+
+    @Benchmark
+    public int getMissing() {
+        return settings.getInteger("missing", 7);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.benchmarks;
+
+import com.cerberustek.service.impl.command.BatchCommand;
+import com.cerberustek.service.impl.command.ExitCommand;
+import com.cerberustek.service.impl.command.HelpCommand;
+import com.cerberustek.service.impl.command.ServiceCommand;
+import com.cerberustek.service.impl.terminal.CommandTokenizer;
+import com.cerberustek.service.impl.terminal.SimpleTerminalExecutor;
+import com.cerberustek.service.terminal.TerminalCommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command lookup and tokenizing of command lines. {@code splitRaw} is
+ * the tokenizer the terminal used before {@link CommandTokenizer}, kept
+ * here as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dde.cerberus.log_console=false")
+public class TerminalBenchmark {
+
+    private static final String LINE = "service stop \"Main Service\" --json";
+
+    private SimpleTerminalExecutor executor;
+
+    @Setup
+    public void setup() {
+        executor = new SimpleTerminalExecutor();
+        executor.init();
+        executor.registerCommand(new ServiceCommand());
+        executor.registerCommand(new HelpCommand());
+        executor.registerCommand(new ExitCommand());
+        executor.registerCommand(new BatchCommand());
+    }
+
+    /**
+     * Tokenizer of a benchmark thread, reused like the terminal does.
+     */
+    @State(Scope.Thread)
+    public static class Tokenizer {
+
+        private final CommandTokenizer tokenizer = new CommandTokenizer();
+    }
+
+    @Benchmark
+    public TerminalCommand getCommand() {
+        return executor.getCommand("service");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TerminalCommand getCommandContended() {
+        return executor.getCommand("service");
+    }
+
+    @Benchmark
+    public TerminalCommand findCommand() {
+        return executor.findCommand("serv");
+    }
+
+    @Benchmark
+    public int tokenize(Tokenizer state) {
+        return state.tokenizer.tokenize(LINE);
+    }
+
+    @Benchmark
+    public String[] tokenizeToArray(Tokenizer state) {
+        state.tokenizer.tokenize(LINE);
+        return state.tokenizer.toArray(0);
+    }
+
+    @Benchmark
+    public String[] splitRaw() {
+        ArrayList<String> list = new ArrayList<>();
+        StringBuilder builder = new StringBuilder();
+        char[] chars = LINE.toCharArray();
+
+        boolean quotation = false;
+        for (char c : chars) {
+            if (c == '"')
+                quotation = !quotation;
+            else if (!quotation && c == ' ') {
+                list.add(builder.toString());
+                builder = new StringBuilder();
+            } else
+                builder.append(c);
+        }
+        list.add(builder.toString());
+
+        String[] output = new String[list.size()];
+        list.toArray(output);
+        return output;
+    }
+}
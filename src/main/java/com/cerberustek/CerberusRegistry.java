@@ -26,18 +26,30 @@ package com.cerberustek;
 import com.cerberustek.logger.CerberusLogger;
 import com.cerberustek.logger.Level;
 import com.cerberustek.logger.LogArchive;
+import com.cerberustek.service.AmbiguousServiceException;
 import com.cerberustek.service.CerberusService;
 import com.cerberustek.service.IllegalServiceStateException;
+import com.cerberustek.service.SelectionStrategy;
+import com.cerberustek.service.ServiceHandle;
 import com.cerberustek.service.ServiceNotFoundException;
+import com.cerberustek.service.impl.BootTimeline;
 import com.cerberustek.service.impl.MainService;
+import com.cerberustek.service.impl.ServiceInstances;
+import com.cerberustek.service.impl.ServiceNameIndex;
+import com.cerberustek.service.impl.ServiceTypeIndex;
 import com.cerberustek.service.terminal.Terminal;
 import com.cerberustek.service.terminal.TerminalCommand;
+import com.cerberustek.service.terminal.TerminalExecutor;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class is defined as a singleton
@@ -45,18 +57,44 @@ import java.util.HashMap;
 public class CerberusRegistry {
 
     public static final String VERSION = "1.01";
-    /** The map of services */
-    private final HashMap<Class<? extends CerberusService>, CerberusService> services;
-    /** Map of the start times of all services */
-    private final HashMap<Class<? extends CerberusService>, Long> runningMap;
+    public static final String ACCESS_DENIED = "Access denied! If you think this is a mistake contact your local" +
+            " system administrator.";
+    /** The map of services, changed at runtime when keyed instances come and go */
+    private final ConcurrentHashMap<Class<? extends CerberusService>, CerberusService> services;
+    /** All instances of each service class, the first being the one in {@code services} */
+    private final ConcurrentHashMap<Class<? extends CerberusService>, ServiceInstances<CerberusService>> instances =
+            new ConcurrentHashMap<>();
+    /** Start times of the running services, only changed through atomic updates */
+    private final ConcurrentHashMap<Class<? extends CerberusService>, Long> runningMap;
+    /** Changes whenever a service is registered, started or stopped */
+    private final AtomicLong serviceVersion = new AtomicLong();
+    /** Index of the simple names of all services */
+    private volatile ServiceNameIndex nameIndex = ServiceNameIndex.EMPTY;
+    /** Index of the superclasses and interfaces of all services */
+    private volatile ServiceTypeIndex typeIndex = ServiceTypeIndex.EMPTY;
+    /** Handles handed out by getHandle, one per service class */
+    private final ConcurrentHashMap<Class<? extends CerberusService>, ServiceHandle<?>> handles =
+            new ConcurrentHashMap<>();
+    /** Timeline of all service starts */
+    private final BootTimeline bootTimeline = new BootTimeline();
 
     /** The logger's archive */
     private final LogArchive archive;
     /** Logger Object */
     private final CerberusLogger logger;
 
-    /** Singleton instance */
-    private static CerberusRegistry instance;
+    /** Walks the stack to find the caller of a log method */
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    /** Guards the creation of the singleton instance */
+    private static final Object INSTANCE_LOCK = new Object();
+    /** Singleton instance, set once it has been started */
+    private static volatile CerberusRegistry instance;
+    /** Instance being started, only visible to the starting thread as it holds the lock */
+    private static CerberusRegistry starting;
+
+    /** Rather or not the registry has been started with a terminal */
+    private boolean useTerminal;
 
     /**
      * Returns the currently active Cerberus Registry.
@@ -68,37 +106,75 @@ public class CerberusRegistry {
      * @return Cerberus Registry
      */
     public static CerberusRegistry getInstance() {
-        if (instance == null) {
-            instance = new CerberusRegistry();
-            instance.start(true);
-        }
-
-        return instance;
+        CerberusRegistry registry = instance;
+        return registry != null ? registry : create(true);
     }
 
     /**
      * Returns the currently active Cerberus Registry.
      *
      * This Method will create a new instance of the Cerberus
-     * Registry in case there is no valid instance already
-     * available.
+     * Registry without a terminal in case there is no valid
+     * instance already available.
      *
      * @return Cerberus Registry
      */
     public static CerberusRegistry getInstanceNoTerminal() {
-        if (instance == null) {
-            instance = new CerberusRegistry();
-            instance.start(false);
-        }
+        CerberusRegistry registry = instance;
+        return registry != null ? registry : create(false);
+    }
 
-        return instance;
+    /**
+     * Creates and starts the Cerberus Registry.
+     *
+     * Applications should call this method once at the very beginning,
+     * before any other thread can access the registry, to choose rather
+     * or not the registry reads commands from the terminal. Calling it
+     * again with the same mode returns the running registry.
+     *
+     * @param useTerminal rather or not to start the terminal
+     * @return Cerberus Registry
+     * @throws IllegalStateException if the registry has already been
+     *      created with the other mode
+     */
+    public static CerberusRegistry bootstrap(boolean useTerminal) {
+        CerberusRegistry registry = create(useTerminal);
+        if (registry.useTerminal != useTerminal)
+            throw new IllegalStateException("The registry has already been started " +
+                    (registry.useTerminal ? "with" : "without") + " a terminal!");
+        return registry;
+    }
+
+    /**
+     * Creates the singleton instance, unless another thread has done so
+     * in the meantime. Other threads wait until the new instance has been
+     * started; the starting thread itself receives the new instance from
+     * calls made while starting it.
+     */
+    private static CerberusRegistry create(boolean useTerminal) {
+        synchronized (INSTANCE_LOCK) {
+            if (instance != null)
+                return instance;
+            if (starting != null)
+                return starting;
+
+            CerberusRegistry registry = new CerberusRegistry();
+            starting = registry;
+            try {
+                registry.start(useTerminal);
+            } finally {
+                starting = null;
+            }
+            instance = registry;
+            return registry;
+        }
     }
 
     /** Private Constructor. Doesn't do much, except keeping
      * people from fucking with the singleton nature of this class */
     private CerberusRegistry() {
-        services = new HashMap<>();
-        runningMap = new HashMap<>();
+        services = new ConcurrentHashMap<>();
+        runningMap = new ConcurrentHashMap<>();
 
         archive = new LogArchive();
         CerberusLogger l;
@@ -111,6 +187,7 @@ public class CerberusRegistry {
     }
 
     private void start(boolean useTerminal) {
+        this.useTerminal = useTerminal;
         registerService(new MainService(useTerminal));
         requestStart(MainService.class);
 
@@ -131,7 +208,9 @@ public class CerberusRegistry {
      * Returns a service based on its registered {@code serviceClass}.
      *
      * If there is no service registered to the specified serviceClass,
-     * this method will throw a ServiceNotFoundException.
+     * the service implementing it is returned as with
+     * {@link #findService(Class)}. If there is none either, this method
+     * will throw a ServiceNotFoundException.
      *
      * @param serviceClass ServiceClass
      * @param <T> The type of the service requested
@@ -141,7 +220,70 @@ public class CerberusRegistry {
         CerberusService service = services.get(serviceClass);
         if (service != null)
             return serviceClass.cast(service);
-        throw new ServiceNotFoundException(serviceClass);
+        return findService(serviceClass);
+    }
+
+    /**
+     * Returns the service implementing a class or interface.
+     *
+     * The type does not have to be the service class of the service,
+     * any superclass or interface of the service class or of the service
+     * itself is matched. If more than one service matches, the service
+     * registered to the type as service class is returned if there is
+     * one.
+     *
+     * @param type class or interface
+     * @param <T> The type of the service requested
+     * @return Service implementing {@code type}
+     * @throws ServiceNotFoundException if no service implements the type
+     * @throws AmbiguousServiceException if more than one service
+     *      implements the type
+     */
+    public <T> T findService(Class<T> type) {
+        List<CerberusService> matches = typeIndex.find(type);
+        if (matches.size() == 1)
+            return type.cast(matches.get(0));
+        if (matches.isEmpty())
+            throw new ServiceNotFoundException(type);
+
+        CerberusService service = services.get(type);
+        if (service != null)
+            return type.cast(service);
+        throw new AmbiguousServiceException(type, matches);
+    }
+
+    /**
+     * Returns all services implementing a class or interface, in the
+     * order they have been registered.
+     *
+     * Only the first instance of each service class is returned, see
+     * {@link #getServices(Class)} for all instances of a service class.
+     *
+     * @param type class or interface
+     * @param <T> The type of the services requested
+     * @return Services implementing {@code type}, empty if there are none
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> findServices(Class<T> type) {
+        return (List<T>) typeIndex.find(type);
+    }
+
+    /**
+     * Returns a handle to a service.
+     *
+     * The handle resolves the service like {@link #getService(Class)},
+     * but only looks it up again after a service has been registered,
+     * started or stopped. Use it instead of {@code getService} in code
+     * that runs every tick. The service does not have to be registered
+     * yet when the handle is created.
+     *
+     * @param serviceClass ServiceClass
+     * @param <T> The type of the service requested
+     * @return Handle of the service
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends CerberusService> ServiceHandle<T> getHandle(Class<T> serviceClass) {
+        return (ServiceHandle<T>) handles.computeIfAbsent(serviceClass, k -> new ServiceHandle<>(this, serviceClass));
     }
 
     /**
@@ -155,9 +297,11 @@ public class CerberusRegistry {
      * @return Owner service
      */
     public CerberusService getService(Thread thread) {
-        for (CerberusService service : services.values()) {
-            if (service.getThreads() != null && service.getThreads().contains(thread))
-                return service;
+        for (ServiceInstances<CerberusService> group : instances.values()) {
+            for (CerberusService service : group.all()) {
+                if (service.getThreads() != null && service.getThreads().contains(thread))
+                    return service;
+            }
         }
         throw new ServiceNotFoundException(thread);
     }
@@ -167,25 +311,29 @@ public class CerberusRegistry {
      *
      * This method will search for a service based on the simple name
      * of the service class. If no service with a matching service class
-     * name is found, this method will attempt to find a service with a
-     * similar name. If this also fails, this method will throw a
-     * service not found exception.
+     * name is found, this method will attempt to find a service whose
+     * name matches ignoring case, then a service whose name starts with
+     * the specified name and finally a service whose name contains it.
+     * If this also fails, this method will throw a service not found
+     * exception. If the first of these steps that finds any service finds
+     * more than one, this method will throw an ambiguous service
+     * exception.
      *
      * @param name name or part of the simple name of a service class
      * @return service
      */
     public CerberusService getService(@NotNull String name) {
-        for (CerberusService service : services.values()) {
-            if (service.serviceClass().getSimpleName().equals(name))
-                return service;
-        }
-
-        for (CerberusService service : services.values()) {
-            if (service.serviceClass().getSimpleName().equalsIgnoreCase(name) ||
-                service.serviceClass().getSimpleName().toLowerCase().contains(name.toLowerCase()))
-                return service;
-        }
-        throw new ServiceNotFoundException(name);
+        List<CerberusService> matches = nameIndex.find(name);
+        if (matches.isEmpty())
+            throw new ServiceNotFoundException(name);
+        if (matches.size() > 1)
+            throw new AmbiguousServiceException(name, matches);
+
+        // The index may hold an instance that has been replaced as primary instance since
+        CerberusService service = services.get(matches.get(0).serviceClass());
+        if (service == null)
+            throw new ServiceNotFoundException(name);
+        return service;
     }
 
     @Deprecated
@@ -201,8 +349,11 @@ public class CerberusRegistry {
      * @return The service registered
      */
     public <T extends CerberusService> T registerService(Class<T> serviceClass, T service) {
-        if (!services.containsKey(serviceClass))
-            services.put(serviceClass, service);
+        if (services.putIfAbsent(serviceClass, service) == null) {
+            instancesOf(serviceClass).add(service, null);
+            index(service);
+            serviceVersion.incrementAndGet();
+        }
         return service;
     }
 
@@ -214,11 +365,180 @@ public class CerberusRegistry {
      * @return The service registered
      */
     public <T extends CerberusService> T registerService(T service) {
-        if (!services.containsKey(service.serviceClass()))
-            services.put(service.serviceClass(), service);
+        if (services.putIfAbsent(service.serviceClass(), service) == null) {
+            instancesOf(service.serviceClass()).add(service, null);
+            index(service);
+            serviceVersion.incrementAndGet();
+        }
+        return service;
+    }
+
+    /**
+     * Registers an additional instance of a service under a key.
+     *
+     * A service class can have any number of keyed instances, for
+     * example one per network queue or one per world region. Instances
+     * are started and stopped together with their service class; an
+     * instance registered while its service class is running is started
+     * right away. If there is no instance of the service class yet, this
+     * instance also becomes the one returned by
+     * {@link #getService(Class)}.
+     *
+     * @param service The service to register
+     * @param key Key of the instance
+     * @param <T> The service Type
+     * @return The service registered
+     * @throws IllegalArgumentException if there already is an instance
+     *      registered under the key
+     */
+    public <T extends CerberusService> T registerService(T service, @NotNull Object key) {
+        Class<? extends CerberusService> serviceClass = service.serviceClass();
+        if (!instancesOf(serviceClass).add(service, key))
+            throw new IllegalArgumentException("There already is an instance of " + serviceClass.getName() +
+                    " registered under the key " + key + "!");
+
+        // Serialized with unregisterService, so the class never ends up without a primary instance
+        synchronized (this) {
+            if (services.putIfAbsent(serviceClass, service) == null)
+                index(service);
+        }
+        serviceVersion.incrementAndGet();
+        if (isRunning(serviceClass))
+            service.start();
+        return service;
+    }
+
+    /**
+     * Removes the instance registered under a key, stopping it if its
+     * service class is running.
+     *
+     * @param serviceClass ServiceClass
+     * @param key Key of the instance
+     * @return The removed instance, or null if there is none
+     */
+    public CerberusService unregisterService(Class<? extends CerberusService> serviceClass, @NotNull Object key) {
+        ServiceInstances<CerberusService> group = instances.get(serviceClass);
+        CerberusService service = group != null ? group.remove(key) : null;
+        if (service == null)
+            return null;
+
+        synchronized (this) {
+            if (services.get(serviceClass) == service) {
+                CerberusService primary = group.primary();
+                if (primary != null)
+                    services.put(serviceClass, primary);
+                else
+                    services.remove(serviceClass);
+                replaceIndexed(service, primary);
+            }
+        }
+        serviceVersion.incrementAndGet();
+        if (isRunning(serviceClass)) {
+            service.stop();
+            if (!services.containsKey(serviceClass))
+                runningMap.remove(serviceClass);
+        }
         return service;
     }
 
+    /**
+     * Returns the instance of a service registered under a key.
+     *
+     * @param serviceClass ServiceClass
+     * @param key Key of the instance
+     * @param <T> The type of the service requested
+     * @return Service instance
+     * @throws ServiceNotFoundException if there is no instance under the key
+     */
+    public <T extends CerberusService> T getService(Class<T> serviceClass, @NotNull Object key) {
+        ServiceInstances<CerberusService> group = instances.get(serviceClass);
+        CerberusService service = group != null ? group.get(key) : null;
+        if (service == null)
+            throw new ServiceNotFoundException(serviceClass, key);
+        return serviceClass.cast(service);
+    }
+
+    /**
+     * Returns all instances of a service, in the order they have been
+     * registered.
+     *
+     * @param serviceClass ServiceClass
+     * @param <T> The type of the service requested
+     * @return Service instances, empty if there are none
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends CerberusService> List<T> getServices(Class<T> serviceClass) {
+        ServiceInstances<CerberusService> group = instances.get(serviceClass);
+        return group != null ? (List<T>) group.all() : Collections.emptyList();
+    }
+
+    /**
+     * Picks one of the instances of a service.
+     *
+     * @param serviceClass ServiceClass
+     * @param strategy Strategy to pick the instance with
+     * @param key Key to pick the instance for with
+     *            {@link SelectionStrategy#CONSISTENT_HASH}, ignored by
+     *            the other strategies
+     * @param <T> The type of the service requested
+     * @return Service instance
+     * @throws ServiceNotFoundException if there are no instances
+     */
+    public <T extends CerberusService> T selectService(Class<T> serviceClass, SelectionStrategy strategy,
+                                                       Object key) {
+        ServiceInstances<CerberusService> group = instances.get(serviceClass);
+        CerberusService service = group != null ? group.select(strategy, key) : null;
+        if (service == null)
+            throw new ServiceNotFoundException(serviceClass);
+        return serviceClass.cast(service);
+    }
+
+    private ServiceInstances<CerberusService> instancesOf(Class<? extends CerberusService> serviceClass) {
+        return instances.computeIfAbsent(serviceClass, k -> new ServiceInstances<>());
+    }
+
+    /**
+     * Returns the service class a type resolves to, so the state of a
+     * service is kept under the class it has been registered to, no
+     * matter which of its types it is requested by.
+     */
+    private Class<? extends CerberusService> registeredClass(Class<? extends CerberusService> type) {
+        if (services.containsKey(type))
+            return type;
+        List<CerberusService> matches = typeIndex.find(type);
+        return matches.size() == 1 ? registeredClass(type, matches.get(0)) : type;
+    }
+
+    private Class<? extends CerberusService> registeredClass(Class<? extends CerberusService> type,
+                                                             CerberusService service) {
+        if (services.get(type) == service)
+            return type;
+        if (services.get(service.serviceClass()) == service)
+            return service.serviceClass();
+        for (Map.Entry<Class<? extends CerberusService>, CerberusService> entry : services.entrySet()) {
+            if (entry.getValue() == service)
+                return entry.getKey();
+        }
+        return type;
+    }
+
+    private List<CerberusService> allInstances(Class<? extends CerberusService> serviceClass) {
+        ServiceInstances<CerberusService> group = instances.get(serviceClass);
+        return group != null ? group.all() : Collections.emptyList();
+    }
+
+    private synchronized void index(CerberusService service) {
+        nameIndex = nameIndex.with(service);
+        typeIndex = typeIndex.with(service);
+    }
+
+    private synchronized void replaceIndexed(CerberusService service, CerberusService replacement) {
+        ServiceNameIndex names = nameIndex.without(service);
+        ServiceTypeIndex types = typeIndex.without(service);
+        nameIndex = replacement != null ? names.with(replacement) : names;
+        typeIndex = replacement != null ? types.with(replacement) : types;
+    }
+
     /**
      * Returns rather or not a service has been registered to the the
      * service registry.
@@ -235,11 +555,12 @@ public class CerberusRegistry {
      * is currently running or not.
      *
      * @param serviceClass ServiceClass registered to the service
-     *                    in question
+     *                    in question, or a type only that service
+     *                    implements
      * @return Is the server running?
      */
     public boolean isRunning(Class<? extends CerberusService> serviceClass) {
-        return runningMap.containsKey(serviceClass);
+        return runningMap.containsKey(registeredClass(serviceClass));
     }
 
     /**
@@ -257,10 +578,23 @@ public class CerberusRegistry {
      */
     public <T extends CerberusService> T requestStart(Class<T> serviceClass) {
         CerberusService service = getService(serviceClass);
-        if (isRunning(serviceClass))
+        Class<? extends CerberusService> registered = registeredClass(serviceClass, service);
+        if (runningMap.putIfAbsent(registered, System.currentTimeMillis()) != null)
             throw new IllegalServiceStateException(service);
-        runningMap.put(serviceClass, System.currentTimeMillis());
-        service.start();
+        serviceVersion.incrementAndGet();
+
+        for (CerberusService instance : allInstances(registered)) {
+            BootTimeline.Span span = bootTimeline.begin(registered);
+            Throwable error = null;
+            try {
+                instance.start();
+            } catch (RuntimeException | Error e) {
+                error = e;
+                throw e;
+            } finally {
+                bootTimeline.end(span, error);
+            }
+        }
         return serviceClass.cast(service);
     }
 
@@ -281,6 +615,8 @@ public class CerberusRegistry {
                 // Ignore this exception
             }
         }
+        bootTimeline.finish();
+        bootTimeline.exportIfRequested();
     }
 
     /**
@@ -298,10 +634,12 @@ public class CerberusRegistry {
      */
     public <T extends CerberusService> T requestStop(Class<T> serviceClass) {
         CerberusService service = getService(serviceClass);
-        if (!isRunning(serviceClass))
+        Class<? extends CerberusService> registered = registeredClass(serviceClass, service);
+        if (runningMap.remove(registered) == null)
             throw new IllegalServiceStateException(service);
-        runningMap.remove(serviceClass);
-        service.stop();
+        serviceVersion.incrementAndGet();
+        for (CerberusService instance : allInstances(registered))
+            instance.stop();
         return serviceClass.cast(service);
     }
 
@@ -310,11 +648,12 @@ public class CerberusRegistry {
      */
     public void requestStop() {
         for (Class<? extends CerberusService> serviceClass : runningMap.keySet()) {
-            CerberusService service = getService(serviceClass);
-            if (service != null)
-                service.stop();
+            if (runningMap.remove(serviceClass) == null)
+                continue;
+            for (CerberusService instance : allInstances(serviceClass))
+                instance.stop();
         }
-        runningMap.clear();
+        serviceVersion.incrementAndGet();
     }
 
     /**
@@ -335,13 +674,20 @@ public class CerberusRegistry {
      */
     public <T extends CerberusService> T forceStop(Class<T> serviceClass) {
         CerberusService service = getService(serviceClass);
-        if (!isRunning(serviceClass))
+        Class<? extends CerberusService> registered = registeredClass(serviceClass, service);
+        if (runningMap.remove(registered) == null)
             throw new IllegalServiceStateException(service);
-        Collection<Thread> threads = service.getThreads();
-        for (Thread t : threads)
-            t.interrupt();
-        runningMap.remove(serviceClass);
-        service.stop();
+        List<CerberusService> all = allInstances(registered);
+        for (CerberusService instance : all) {
+            Collection<Thread> threads = instance.getThreads();
+            if (threads != null) {
+                for (Thread t : threads)
+                    t.interrupt();
+            }
+        }
+        serviceVersion.incrementAndGet();
+        for (CerberusService instance : all)
+            instance.stop();
         return serviceClass.cast(service);
     }
 
@@ -356,9 +702,20 @@ public class CerberusRegistry {
      * @return Last known start-time of the service
      */
     public long getOnlineTime(Class<? extends CerberusService> serviceClass) {
-        if (isRunning(serviceClass))
-            return runningMap.get(serviceClass);
-        return -1;
+        Long time = runningMap.get(registeredClass(serviceClass));
+        return time != null ? time : -1;
+    }
+
+    /**
+     * Returns a counter that changes whenever a service is registered,
+     * started or stopped. Values derived from the services, such as the
+     * owner of a thread, can be cached as long as this counter does not
+     * change.
+     *
+     * @return service version
+     */
+    public long getServiceVersion() {
+        return serviceVersion.get();
     }
 
     /**
@@ -379,11 +736,7 @@ public class CerberusRegistry {
             currentService = getService(MainService.class);
         }
 
-        StackTraceElement element;
-        if (currentThread.getStackTrace().length > index)
-            element = currentThread.getStackTrace()[index];
-        else
-            element = currentThread.getStackTrace()[0];
+        StackTraceElement element = caller(index);
 
         logger.logln(currentService.serviceClass(), level, element, message);
     }
@@ -406,15 +759,25 @@ public class CerberusRegistry {
             currentService = getService(MainService.class);
         }
 
-        StackTraceElement element;
-        if (currentThread.getStackTrace().length > index)
-            element = currentThread.getStackTrace()[index];
-        else
-            element = currentThread.getStackTrace()[0];
+        StackTraceElement element = caller(index);
 
         logger.log(currentService.serviceClass(), level, element, message);
     }
 
+    /**
+     * Returns the stack frame of the caller of a log method, walking only
+     * as many frames as needed. The index is counted the same way as by
+     * {@code Thread.getStackTrace()} from within the log method.
+     *
+     * @param index StackTrace index
+     * @return caller frame, or null if the stack is not that deep
+     */
+    private static StackTraceElement caller(int index) {
+        return STACK_WALKER.walk(frames -> frames.skip(index).findFirst())
+                .map(StackWalker.StackFrame::toStackTraceElement)
+                .orElse(null);
+    }
+
     /**
      * Logs a message to the specific logln-level.
      *
@@ -478,7 +841,7 @@ public class CerberusRegistry {
     }
 
     public void printNoPermission() {
-        warning("Access denied! If you think this is a mistake contact your local system administrator.");
+        warning(ACCESS_DENIED);
     }
 
     /**
@@ -494,6 +857,15 @@ public class CerberusRegistry {
         return logger;
     }
 
+    /**
+     * Returns the timeline of all service starts.
+     *
+     * @return BootTimeline
+     */
+    public BootTimeline getBootTimeline() {
+        return bootTimeline;
+    }
+
     /**
      * Returns the main terminal of the Registry.
      *
@@ -508,6 +880,22 @@ public class CerberusRegistry {
         return service.getTerminal();
     }
 
+    /**
+     * Returns the executor holding the commands of the terminal and
+     * the remote console.
+     *
+     * @return TerminalExecutor
+     * @throws IllegalServiceStateException Exception in case
+     *      that the main service is currently not running or
+     *      uses neither a terminal nor a remote console
+     */
+    public TerminalExecutor getTerminalExecutor() {
+        MainService service = getService(MainService.class);
+        if (!isRunning(MainService.class) || service.getExecutor() == null)
+            throw new IllegalServiceStateException(service);
+        return service.getExecutor();
+    }
+
     public void registerTerminalCommand(TerminalCommand command) {
         if (!hasService(MainService.class))
             return;
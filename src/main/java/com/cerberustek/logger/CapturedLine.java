@@ -0,0 +1,69 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.logger;
+
+import com.cerberustek.service.CerberusService;
+
+/**
+ * Line of output captured from {@code System.out} or {@code System.err},
+ * waiting to be logged.
+ */
+public final class CapturedLine {
+
+    private final Class<? extends CerberusService> serviceClass;
+    private final Level level;
+    private final String message;
+    private final long time;
+
+    /**
+     * Creates a captured line.
+     *
+     * @param serviceClass service the printing thread belongs to
+     * @param level log level of the line
+     * @param message line without line separator
+     * @param time the time the line was printed
+     */
+    public CapturedLine(Class<? extends CerberusService> serviceClass, Level level, String message, long time) {
+        this.serviceClass = serviceClass;
+        this.level = level;
+        this.message = message;
+        this.time = time;
+    }
+
+    public Class<? extends CerberusService> getService() {
+        return serviceClass;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getTime() {
+        return time;
+    }
+}
@@ -34,11 +34,18 @@ public class CerberusLogger implements Closeable {
 
     private final static int BUFFER_SIZE = 4096;
     private final static int MAX_LOGSIZE = 1000;
+    /** Stack trace of captured lines, which are logged without walking the stack */
+    private final static String CAPTURED = "captured output";
 
     private final LogArchive archive;
     private final HashMap<Class<? extends CerberusService>, HashSet<LogElement>> logs = new HashMap<>();
     private final BufferedWriter outWriter;
     private final BufferedWriter errWriter;
+    /** Per thread copy target of the log lines */
+    private final ThreadLocal<PrintStream> mirror = new ThreadLocal<>();
+    private final LogRateLimiter rateLimiter = new LogRateLimiter(this::report);
+    /** Rather log lines are written to the console */
+    private final boolean console = System.getProperty("de.cerberus.log_console", "true").equals("true");
 
     public CerberusLogger(LogArchive archive) throws UnsupportedEncodingException {
         this.archive = archive;
@@ -56,21 +63,29 @@ public class CerberusLogger implements Closeable {
      */
     public void logln(Class<? extends CerberusService> serviceClass, Level level, StackTraceElement stackTrace,
                       String message) {
+        if (rateLimiter.admit(serviceClass, level, stackTrace, message))
+            write(serviceClass, level, stackTrace, message);
+    }
+
+    private void write(Class<? extends CerberusService> serviceClass, Level level, StackTraceElement stackTrace,
+                       String message) {
         long currentTime = System.currentTimeMillis();
-        LogElement element = new LogElement(serviceClass, level + message, stackTrace.toString(), currentTime);
+        LogElement element = new LogElement(serviceClass, level + message, String.valueOf(stackTrace), currentTime);
         put(serviceClass, element);
-        if (level == Level.FATAL)
-            printlnErr('\r' + "[" + getTimeStamp(currentTime) + " | " + serviceClass.getSimpleName() + " | " + level
-                    + "]> " + message + " at: \n" + element.getStackTrace());
-        else if (level == Level.CRITICAL)
-            printlnErr('\r' + "[" + getTimeStamp(currentTime) + " | " + serviceClass.getSimpleName() + " | " + level
-                    + "]> " + message);
+        String line = format(serviceClass, level, element, message, currentTime);
+        if (level == Level.FATAL || level == Level.CRITICAL)
+            printlnErr('\r' + line);
         else
-            println('\r' + "[" + getTimeStamp(currentTime) + " | " + serviceClass.getSimpleName() + " | " + level
-                    + "]> " + message);
+            println('\r' + line);
+        mirror(line);
         dump();
     }
 
+    private void report(Class<? extends CerberusService> serviceClass, Level level, StackTraceElement stackTrace,
+                        String message) {
+        write(serviceClass, level == Level.FATAL ? Level.CRITICAL : level, stackTrace, message);
+    }
+
     /**
      * Will log a message without starting a new line.
      *
@@ -81,22 +96,94 @@ public class CerberusLogger implements Closeable {
      */
     public void log(Class<? extends CerberusService> serviceClass, Level level, StackTraceElement stackTrace,
                     String message) {
+        if (!rateLimiter.admit(serviceClass, level, stackTrace, message))
+            return;
+
         long currentTime = System.currentTimeMillis();
-        LogElement element = new LogElement(serviceClass, level + message, stackTrace.toString(), currentTime);
+        LogElement element = new LogElement(serviceClass, level + message, String.valueOf(stackTrace), currentTime);
         put(serviceClass, element);
-        if (level == Level.FATAL)
-            printErr('\r' + "[" + getTimeStamp(currentTime) + " | " + serviceClass.getSimpleName() + " | " + level
-                    + "]> " + message + " at: \n" + element.getStackTrace());
-        else if (level == Level.CRITICAL)
-            printErr('\r' + "[" + getTimeStamp(currentTime) + " | " + serviceClass.getSimpleName() + " | " + level
-                    + "]> " + message);
+        String line = format(serviceClass, level, element, message, currentTime);
+        if (level == Level.FATAL || level == Level.CRITICAL)
+            printErr('\r' + line);
         else
-            print('\r' + "[" + getTimeStamp(currentTime) + " | " + serviceClass.getSimpleName() + " | " + level
-                    + "]> " + message);
+            print('\r' + line);
+        mirror(line);
+        dump();
+    }
+
+    /**
+     * Will logln a batch of captured lines. The console is written and
+     * flushed once for the whole batch.
+     *
+     * @param lines captured lines
+     */
+    public void loglnAll(Collection<CapturedLine> lines) {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        synchronized (this) {
+            for (CapturedLine captured : lines) {
+                LogElement element = new LogElement(captured.getService(),
+                        captured.getLevel() + captured.getMessage(), CAPTURED, captured.getTime());
+                put(captured.getService(), element);
+                String line = format(captured.getService(), captured.getLevel(), element, captured.getMessage(),
+                        captured.getTime());
+                if (captured.getLevel() == Level.FATAL || captured.getLevel() == Level.CRITICAL)
+                    err.append('\r').append(line).append('\n');
+                else
+                    out.append('\r').append(line).append('\n');
+                mirror(line);
+            }
+        }
+        if (out.length() > 0)
+            print(out.toString());
+        if (err.length() > 0)
+            printErr(err.toString());
         dump();
     }
 
+    private String format(Class<? extends CerberusService> serviceClass, Level level, LogElement element,
+                          String message, long currentTime) {
+        String line = "[" + getTimeStamp(currentTime) + " | " + serviceClass.getSimpleName() + " | " + level
+                + "]> " + message;
+        if (level == Level.FATAL)
+            return line + " at: \n" + element.getStackTrace();
+        return line;
+    }
+
+    /**
+     * Copies all log lines of the current thread to the specified
+     * stream, in addition to the console. This is used to show the
+     * output of a command to the remote session that executes it.
+     *
+     * @param stream stream to copy the log lines to, or null to stop
+     *               copying
+     */
+    public void mirrorThread(PrintStream stream) {
+        if (stream == null)
+            mirror.remove();
+        else
+            mirror.set(stream);
+    }
+
+    /**
+     * Returns rather the log lines of the current thread are copied
+     * to a stream.
+     *
+     * @return is mirrored?
+     */
+    public boolean isMirrored() {
+        return mirror.get() != null;
+    }
+
+    private void mirror(String line) {
+        PrintStream stream = mirror.get();
+        if (stream != null)
+            stream.println(line);
+    }
+
     public void println(String s) {
+        if (!console)
+            return;
         try {
             outWriter.write(s + '\n');
             outWriter.flush();
@@ -106,6 +193,8 @@ public class CerberusLogger implements Closeable {
     }
 
     public void print(String s) {
+        if (!console)
+            return;
         try {
             outWriter.write(s);
             outWriter.flush();
@@ -115,6 +204,8 @@ public class CerberusLogger implements Closeable {
     }
 
     public void printlnErr(String s) {
+        if (!console)
+            return;
         try {
             errWriter.write(s + '\n');
             errWriter.flush();
@@ -124,6 +215,8 @@ public class CerberusLogger implements Closeable {
     }
 
     public void printErr(String s) {
+        if (!console)
+            return;
         try {
             errWriter.write(s);
             errWriter.flush();
@@ -132,7 +225,7 @@ public class CerberusLogger implements Closeable {
         }
     }
 
-    private void put(Class<? extends CerberusService> serviceClass, LogElement logElement) {
+    private synchronized void put(Class<? extends CerberusService> serviceClass, LogElement logElement) {
         HashSet<LogElement> elements = logs.computeIfAbsent(serviceClass, k -> new HashSet<>());
         elements.add(logElement);
     }
@@ -142,7 +235,7 @@ public class CerberusLogger implements Closeable {
      * this method will transfer all logln data to the archive and
      * delete it's logs afterwards.
      */
-    public void dump() {
+    public synchronized void dump() {
         if (size() > MAX_LOGSIZE)
             dumpAll();
     }
@@ -154,7 +247,7 @@ public class CerberusLogger implements Closeable {
         return size;
     }
 
-    public void dumpAll() {
+    public synchronized void dumpAll() {
         for (HashSet<LogElement> set : logs.values())
             archive.archive(set);
         logs.clear();
@@ -175,12 +268,18 @@ public class CerberusLogger implements Closeable {
         return archive;
     }
 
-    public Collection<LogElement> getElements(Class<? extends CerberusService> serviceClass) {
+    public synchronized Collection<LogElement> getElements(Class<? extends CerberusService> serviceClass) {
         return logs.get(serviceClass);
     }
 
+    public LogRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
     @Override
     public void close() throws IOException {
+        rateLimiter.destroy();
+        rateLimiter.report();
         outWriter.flush();
         outWriter.close();
 
@@ -30,10 +30,13 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class LogArchive {
 
     private final File file;
+    /** Estimated size of all elements passed to the archive */
+    private final AtomicLong archivedBytes = new AtomicLong();
 
     public LogArchive() {
         Calendar calendar = Calendar.getInstance(Locale.GERMANY);
@@ -47,6 +50,11 @@ public class LogArchive {
      * @param elements element
      */
     void archive(Collection<LogElement> elements) {
+        long bytes = 0;
+        for (LogElement element : elements)
+            bytes += element.getMessage().length() + element.getStackTrace().length() + Long.BYTES;
+        archivedBytes.addAndGet(bytes);
+
         /*
         MetaList<DocElement> list = new ListElement<>();
         for (LogElement el : elements) {
@@ -59,6 +67,16 @@ public class LogArchive {
         // System.out.println("archive(...); Not yet implemented!");
     }
 
+    /**
+     * Returns the estimated size of all log elements archived so far,
+     * counting one byte per character of the message and stack trace.
+     *
+     * @return archived bytes
+     */
+    public long getArchivedBytes() {
+        return archivedBytes.get();
+    }
+
     /**
      * Will retrieve all logElements caused by a specific service on a specific
      * level, within a given time period.
@@ -0,0 +1,264 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.logger;
+
+import com.cerberustek.Destroyable;
+import com.cerberustek.Initable;
+import com.cerberustek.service.CerberusService;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the amount of log messages per call site.
+ *
+ * Every call site, identified by the stack frame that called the
+ * logger, gets a token bucket that admits {@code de.cerberus.log_rate}
+ * messages per second, with bursts of up to {@code de.cerberus.log_burst}
+ * messages. A message identical to the previous message of the same call
+ * site is not logged but counted, if it follows the previous message
+ * within {@code de.cerberus.log_repeat_window} milliseconds or the call
+ * site is over its rate. A repeat after a quiet period is logged like
+ * any other message. Counts of suppressed and
+ * repeated messages are reported in the log periodically, every
+ * {@code de.cerberus.log_report_interval} milliseconds, and repeats are
+ * reported as soon as the call site logs a different message.
+ *
+ * Fatal messages are never suppressed.
+ *
+ * The periodic reports are written by a thread that runs between
+ * {@link #init()} and {@link #destroy()}; the main service owns it.
+ */
+public class LogRateLimiter implements Initable, Destroyable {
+
+    private final ConcurrentHashMap<StackTraceElement, CallSite> callSites = new ConcurrentHashMap<>();
+    private final Reporter reporter;
+    /** Nanoseconds between two tokens, 0 disables rate limiting */
+    private final long interval;
+    /** Nanoseconds a call site may run ahead of its rate */
+    private final long tolerance;
+    /** Nanoseconds within which a repeated message is collapsed */
+    private final long repeatWindow;
+    private final long reportInterval;
+
+    private Thread thread;
+
+    public LogRateLimiter(Reporter reporter) {
+        this(reporter, Integer.getInteger("de.cerberus.log_rate", 100),
+                Integer.getInteger("de.cerberus.log_burst", 200),
+                Long.getLong("de.cerberus.log_repeat_window", 10),
+                Long.getLong("de.cerberus.log_report_interval", 10000));
+    }
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param reporter receives the reports of suppressed messages
+     * @param rate messages per second and call site, 0 for no limit
+     * @param burst messages a call site may log at once
+     * @param repeatWindow milliseconds within which a repeated message is
+     *                     collapsed, 0 to collapse repeats only while over
+     *                     the rate
+     * @param reportInterval milliseconds between two reports
+     */
+    public LogRateLimiter(Reporter reporter, int rate, int burst, long repeatWindow, long reportInterval) {
+        this.reporter = reporter;
+        this.interval = rate > 0 ? 1_000_000_000L / rate : 0;
+        this.tolerance = interval * Math.max(burst - 1, 0);
+        this.repeatWindow = repeatWindow * 1_000_000L;
+        this.reportInterval = reportInterval;
+    }
+
+    /**
+     * Starts reporting suppressed messages periodically.
+     */
+    @Override
+    public synchronized void init() {
+        if (thread != null)
+            return;
+        thread = new Thread(this::reportLoop, "Log Rate Reporter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops reporting suppressed messages periodically. Remaining counts
+     * are left to a last call of {@link #report()}.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (thread == null)
+            return;
+        thread.interrupt();
+        try {
+            // Do not let a report in progress write after the logger has been closed
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Returns the thread reporting suppressed messages.
+     *
+     * @return thread, or null if the reports have not been started
+     */
+    public synchronized Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * Returns rather a message should be logged.
+     *
+     * @param serviceClass service logging the message
+     * @param level level of the message
+     * @param caller stack frame that logged the message
+     * @param message message
+     * @return log the message?
+     */
+    public boolean admit(Class<? extends CerberusService> serviceClass, Level level, StackTraceElement caller,
+                         String message) {
+        if (level == Level.FATAL || caller == null)
+            return true;
+
+        CallSite site = callSites.get(caller);
+        if (site == null) {
+            CallSite created = new CallSite(serviceClass, level, caller);
+            site = callSites.putIfAbsent(caller, created);
+            if (site == null)
+                site = created;
+        }
+
+        long now = System.nanoTime();
+        long previous = site.lastTime;
+        site.lastTime = now;
+        String last = site.last;
+        if (last == message || message.equals(last)) {
+            if (now - previous < repeatWindow || (interval > 0 && !site.tryAcquire(now, interval, tolerance))) {
+                site.repeated.increment();
+                return false;
+            }
+            reportRepeated(site);
+            return true;
+        }
+        site.last = message;
+        reportRepeated(site);
+
+        if (interval > 0 && !site.tryAcquire(now, interval, tolerance)) {
+            site.suppressed.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void reportRepeated(CallSite site) {
+        long repeated = site.repeated.sumThenReset();
+        if (repeated > 0)
+            reporter.report(site.serviceClass, site.level, site.caller,
+                    "Previous message repeated " + repeated + " times");
+    }
+
+    /**
+     * Reports the counts of all call sites that suppressed messages
+     * since the last report.
+     */
+    public void report() {
+        for (CallSite site : callSites.values()) {
+            long suppressed = site.suppressed.sumThenReset();
+            long repeated = site.repeated.sumThenReset();
+            if (suppressed > 0)
+                reporter.report(site.serviceClass, site.level, site.caller, "Suppressed " + suppressed +
+                        " messages from " + site.caller + " exceeding the log rate");
+            if (repeated > 0)
+                reporter.report(site.serviceClass, site.level, site.caller, "Message from " + site.caller +
+                        " repeated " + repeated + " times: " + site.last);
+        }
+    }
+
+    private void reportLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(reportInterval);
+            } catch (InterruptedException e) {
+                break;
+            }
+            report();
+        }
+    }
+
+    /**
+     * Receives the reports of suppressed messages.
+     */
+    public interface Reporter {
+
+        /**
+         * Logs a report, without passing it through the rate limiter.
+         *
+         * @param serviceClass service of the call site
+         * @param level level the call site logged with first
+         * @param caller call site
+         * @param message report
+         */
+        void report(Class<? extends CerberusService> serviceClass, Level level, StackTraceElement caller,
+                    String message);
+    }
+
+    private static class CallSite {
+
+        private final Class<? extends CerberusService> serviceClass;
+        private final Level level;
+        private final StackTraceElement caller;
+
+        /** Theoretical arrival time of the next message, in nanoseconds */
+        private final AtomicLong nextArrival = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder suppressed = new LongAdder();
+        private final LongAdder repeated = new LongAdder();
+        private volatile String last;
+        private volatile long lastTime;
+
+        private CallSite(Class<? extends CerberusService> serviceClass, Level level, StackTraceElement caller) {
+            this.serviceClass = serviceClass;
+            this.level = level;
+            this.caller = caller;
+        }
+
+        /**
+         * Takes a token from the bucket. The bucket is kept as the time
+         * at which it would be full again, so taking a token is a single
+         * compare and set.
+         */
+        private boolean tryAcquire(long now, long interval, long tolerance) {
+            while (true) {
+                long arrival = nextArrival.get();
+                long base = arrival == Long.MIN_VALUE ? now : Math.max(arrival, now);
+                if (base - now > tolerance)
+                    return false;
+                if (nextArrival.compareAndSet(arrival, base + interval))
+                    return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Thrown if a service name or type matches more than one service.
+ */
+public class AmbiguousServiceException extends ServiceNotFoundException {
+
+    private final List<CerberusService> candidates;
+    private final Class<?> type;
+
+    public AmbiguousServiceException(String name, Collection<? extends CerberusService> candidates) {
+        super(name);
+        this.candidates = new ArrayList<>(candidates);
+        type = null;
+    }
+
+    public AmbiguousServiceException(Class<?> type, Collection<? extends CerberusService> candidates) {
+        super(type);
+        this.candidates = new ArrayList<>(candidates);
+        this.type = type;
+    }
+
+    /**
+     * Returns the type that has been searched for.
+     *
+     * @return type or null, if the service was searched by name
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns all services matching the name or type.
+     *
+     * @return matching services
+     */
+    public List<CerberusService> getCandidates() {
+        return candidates;
+    }
+
+    @Override
+    public String getMessage() {
+        StringBuilder builder = new StringBuilder();
+        if (type != null)
+            builder.append("The type ").append(type.getName()).append(" is implemented by multiple services: ");
+        else
+            builder.append("The name ").append(getName()).append(" matches multiple services: ");
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i > 0)
+                builder.append(", ");
+            builder.append(candidates.get(i).serviceClass().getName());
+        }
+        return builder.append('!').toString();
+    }
+}
@@ -61,4 +61,34 @@ public interface CerberusService {
      *              service
      */
     Collection<Thread> getThreads();
+
+    /**
+     * Returns the health of this service.
+     *
+     * The service watchdog calls this method regularly for all running
+     * services and restarts services reporting
+     * {@link ServiceHealth#FAILED}. It is called from the watchdog
+     * thread and should return quickly. Services that cannot tell
+     * rather or not they work report {@link ServiceHealth#HEALTHY};
+     * the watchdog still checks on their threads.
+     *
+     * @return health of the service
+     */
+    default ServiceHealth health() {
+        return ServiceHealth.HEALTHY;
+    }
+
+    /**
+     * Returns rather or not the threads returned by {@link #getThreads()}
+     * run for as long as the service runs.
+     *
+     * If so, the service watchdog treats a terminated thread of this
+     * service as failure. Services owning threads that may finish their
+     * work, such as loaders or short lived workers, keep the default.
+     *
+     * @return do the threads of this service run until it stops?
+     */
+    default boolean requiresLiveThreads() {
+        return false;
+    }
 }
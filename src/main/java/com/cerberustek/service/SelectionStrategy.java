@@ -0,0 +1,38 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service;
+
+/**
+ * Strategies to pick one of several instances of a service.
+ */
+public enum SelectionStrategy {
+
+    /** Picks the instances one after another */
+    ROUND_ROBIN,
+    /** Picks the instance with the smallest queue, see {@link LoadAware} */
+    LEAST_LOADED,
+    /** Picks the same instance for the same key, as long as the instances do not change.
+     * Adding or removing an instance only moves the keys of about one instance */
+    CONSISTENT_HASH
+}
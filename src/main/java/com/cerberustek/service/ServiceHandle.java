@@ -0,0 +1,118 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.cerberustek.service;
+
+import com.cerberustek.CerberusRegistry;
+
+/**
+ * Resolved reference to a registered service.
+ *
+ * A handle looks its service up once and keeps it, together with the
+ * service version of the registry at that time. As long as no service
+ * has been registered, started or stopped since, {@link #get()} only
+ * compares the version and returns the kept service. Otherwise the
+ * service is looked up again, so a handle stays valid when its service
+ * is restarted or replaced.
+ *
+ * Handles are meant to be stored in a final field and used in code that
+ * runs every tick or for every packet. They are obtained through
+ * {@link CerberusRegistry#getHandle(Class)}.
+ *
+ * @param <T> The type of the service
+ */
+public final class ServiceHandle<T extends CerberusService> {
+
+    private final CerberusRegistry registry;
+    private final Class<T> serviceClass;
+    /** Service found by the last lookup, null if there has been none */
+    private volatile Binding<T> binding;
+
+    public ServiceHandle(CerberusRegistry registry, Class<T> serviceClass) {
+        this.registry = registry;
+        this.serviceClass = serviceClass;
+    }
+
+    /**
+     * Returns the service.
+     *
+     * @return service
+     * @throws ServiceNotFoundException if the service is not registered
+     */
+    public T get() {
+        Binding<T> current = binding;
+        if (current != null && current.version == registry.getServiceVersion())
+            return current.service;
+        return bind();
+    }
+
+    /**
+     * Returns the service, or null if it is not registered.
+     *
+     * @return service or null
+     */
+    public T getOrNull() {
+        try {
+            return get();
+        } catch (ServiceNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns rather or not the service is currently running.
+     *
+     * @return is running?
+     */
+    public boolean isRunning() {
+        T service = getOrNull();
+        return service != null && registry.isRunning(service.serviceClass());
+    }
+
+    /**
+     * Returns the class the service is looked up with.
+     *
+     * @return service class
+     */
+    public Class<T> serviceClass() {
+        return serviceClass;
+    }
+
+    private T bind() {
+        // Read the version first, so a change during the lookup is noticed by the next call
+        long version = registry.getServiceVersion();
+        T service = registry.getService(serviceClass);
+        binding = new Binding<>(service, version);
+        return service;
+    }
+
+    private static final class Binding<T> {
+
+        private final T service;
+        private final long version;
+
+        private Binding(T service, long version) {
+            this.service = service;
+            this.version = version;
+        }
+    }
+}
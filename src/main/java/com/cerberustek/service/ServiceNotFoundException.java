@@ -25,15 +25,34 @@ package com.cerberustek.service;
 
 public class ServiceNotFoundException extends RuntimeException {
 
-    public ServiceNotFoundException(Class<? extends CerberusService> serviceClass) {
+    private final String name;
+
+    public ServiceNotFoundException(Class<?> serviceClass) {
         super("No service is registered with service class: " + serviceClass.getName() + "!");
+        name = null;
+    }
+
+    public ServiceNotFoundException(Class<? extends CerberusService> serviceClass, Object key) {
+        super("No instance of " + serviceClass.getName() + " is registered under the key " + key + "!");
+        name = null;
     }
 
     public ServiceNotFoundException(Thread thread) {
         super("The thread: " + thread + " is not owned by any service!");
+        name = null;
     }
 
     public ServiceNotFoundException(String name) {
         super("No service is registered under the name " + name + "!");
+        this.name = name;
+    }
+
+    /**
+     * Returns the name that has been searched for.
+     *
+     * @return name or null, if the service was not searched by name
+     */
+    public String getName() {
+        return name;
     }
 }
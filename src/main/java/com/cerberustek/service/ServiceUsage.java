@@ -0,0 +1,102 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.cerberustek.service;
+
+/**
+ * Resources used by the threads of a service, as measured by the
+ * usage sampler of the main service.
+ *
+ * Rates are averaged over the sampling window. Totals only contain what
+ * has been measured while the threads have been owned by the service;
+ * threads owned by more than one service count for each of them.
+ */
+public final class ServiceUsage {
+
+    private final Class<? extends CerberusService> serviceClass;
+    private final int threads;
+    private final double cpuLoad;
+    private final double allocationRate;
+    private final long cpuTime;
+    private final long allocatedBytes;
+
+    public ServiceUsage(Class<? extends CerberusService> serviceClass, int threads, double cpuLoad,
+                        double allocationRate, long cpuTime, long allocatedBytes) {
+        this.serviceClass = serviceClass;
+        this.threads = threads;
+        this.cpuLoad = cpuLoad;
+        this.allocationRate = allocationRate;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public Class<? extends CerberusService> serviceClass() {
+        return serviceClass;
+    }
+
+    /**
+     * Returns the amount of live threads of all instances of the
+     * service at the last sample.
+     *
+     * @return threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the CPU time used per wall clock time, where 1.0 equals
+     * one fully used core.
+     *
+     * @return cores used
+     */
+    public double getCpuLoad() {
+        return cpuLoad;
+    }
+
+    /**
+     * Returns the bytes allocated per second.
+     *
+     * @return allocation rate, or -1 if not supported by the JVM
+     */
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    /**
+     * Returns the CPU time measured in total.
+     *
+     * @return CPU time in nanoseconds
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Returns the bytes allocated in total.
+     *
+     * @return allocated bytes, or -1 if not supported by the JVM
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.service.CerberusService;
+
+import java.io.*;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timeline of service starts.
+ *
+ * Every start of a service is recorded with its begin and end time and
+ * the thread it ran on. Services started from within the start of another
+ * service count as dependencies of that service: the time spent starting
+ * them is recorded separately, so the time a service spent on its own
+ * start is visible. Recording stops once the boot is finished, so
+ * services started or restarted later on do not grow the timeline.
+ *
+ * While services are starting, the amount of loaded classes and the time
+ * spent on JIT compilation are sampled every few milliseconds, if
+ * {@code de.cerberus.boot_trace} is set. The timeline is exported in the
+ * Chrome trace event format, which can be opened in Perfetto or
+ * {@code chrome://tracing}. With {@code de.cerberus.boot_trace} set to
+ * a file name, the registry exports the timeline to that file after
+ * starting all services.
+ */
+public class BootTimeline {
+
+    private static final long SAMPLE_INTERVAL = 5;
+
+    private final long origin = System.nanoTime();
+    private final boolean sampling;
+    private final ArrayList<Span> spans = new ArrayList<>();
+    private final ArrayList<Sample> samples = new ArrayList<>();
+    /** Services currently starting on each thread, innermost last */
+    private final ThreadLocal<ArrayDeque<Span>> starting = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private int active;
+    private boolean finished;
+    private Thread sampler;
+
+    public BootTimeline() {
+        this(System.getProperty("de.cerberus.boot_trace") != null);
+    }
+
+    /**
+     * Creates a boot timeline.
+     *
+     * @param sampling sample class loading and JIT compilation while
+     *                 services are starting
+     */
+    public BootTimeline(boolean sampling) {
+        this.sampling = sampling;
+    }
+
+    /**
+     * Records the begin of a service start.
+     *
+     * @param serviceClass service class
+     * @return span to pass to {@link #end(Span, Throwable)}
+     */
+    public Span begin(Class<? extends CerberusService> serviceClass) {
+        Thread thread = Thread.currentThread();
+        Span span = new Span(serviceClass.getSimpleName(), thread.getId(), thread.getName(), System.nanoTime());
+        starting.get().addLast(span);
+
+        synchronized (this) {
+            if (active++ == 0 && sampling && !finished && sampler == null) {
+                sampler = new Thread(this::sample, "Boot Timeline Sampler");
+                sampler.setDaemon(true);
+                sampler.start();
+            }
+        }
+        return span;
+    }
+
+    /**
+     * Records the end of a service start.
+     *
+     * @param span span returned by {@link #begin(Class)}
+     * @param error exception thrown by the start, or null
+     */
+    public void end(Span span, Throwable error) {
+        span.end = System.nanoTime();
+        span.error = error == null ? null : error.toString();
+
+        ArrayDeque<Span> stack = starting.get();
+        stack.remove(span);
+        Span parent = stack.peekLast();
+        if (parent != null)
+            parent.dependencies += span.end - span.begin;
+
+        synchronized (this) {
+            if (!finished)
+                spans.add(span);
+            active--;
+            if (active == 0 && sampler != null)
+                sampler.interrupt();
+        }
+    }
+
+    /**
+     * Marks the boot as finished. Starts that end afterwards are not
+     * recorded anymore.
+     */
+    public synchronized void finish() {
+        finished = true;
+    }
+
+    /**
+     * Returns the recorded starts, in the order they ended.
+     *
+     * @return spans
+     */
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    private void sample() {
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        boolean compilationTime = compilation != null && compilation.isCompilationTimeMonitoringSupported();
+
+        while (true) {
+            Sample sample = new Sample(System.nanoTime(), classLoading.getTotalLoadedClassCount(),
+                    compilationTime ? compilation.getTotalCompilationTime() : -1);
+            synchronized (this) {
+                samples.add(sample);
+                if (active == 0) {
+                    sampler = null;
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(SAMPLE_INTERVAL);
+            } catch (InterruptedException e) {
+                // Take a last sample at the end of the boot
+            }
+        }
+    }
+
+    /**
+     * Writes the timeline in the Chrome trace event format.
+     *
+     * @param file target file
+     * @throws IOException if the file cannot be written
+     */
+    public void export(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8))) {
+            writer.write(toJson());
+        }
+    }
+
+    /**
+     * Returns the timeline in the Chrome trace event format.
+     *
+     * @return JSON document
+     */
+    public synchronized String toJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+
+        ArrayList<Long> threads = new ArrayList<>();
+        for (Span span : spans) {
+            if (!threads.contains(span.threadId)) {
+                threads.add(span.threadId);
+                first = separator(builder, first);
+                builder.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(span.threadId)
+                        .append(",\"args\":{\"name\":");
+                appendString(builder, span.threadName);
+                builder.append("}}");
+            }
+
+            first = separator(builder, first);
+            builder.append("{\"name\":");
+            appendString(builder, span.service);
+            builder.append(",\"cat\":\"service\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(span.threadId)
+                    .append(",\"ts\":").append(micros(span.begin - origin))
+                    .append(",\"dur\":").append(micros(span.end - span.begin))
+                    .append(",\"args\":{\"self_us\":").append(micros(span.end - span.begin - span.dependencies))
+                    .append(",\"dependencies_us\":").append(micros(span.dependencies));
+            if (span.error != null) {
+                builder.append(",\"error\":");
+                appendString(builder, span.error);
+            }
+            builder.append("}}");
+        }
+
+        for (Sample sample : samples) {
+            first = separator(builder, first);
+            builder.append("{\"name\":\"loaded classes\",\"ph\":\"C\",\"pid\":1,\"ts\":")
+                    .append(micros(sample.time - origin))
+                    .append(",\"args\":{\"classes\":").append(sample.loadedClasses).append("}}");
+            if (sample.compilationTime >= 0) {
+                builder.append(",{\"name\":\"jit compilation\",\"ph\":\"C\",\"pid\":1,\"ts\":")
+                        .append(micros(sample.time - origin))
+                        .append(",\"args\":{\"ms\":").append(sample.compilationTime).append("}}");
+            }
+        }
+        builder.append("]}");
+        return builder.toString();
+    }
+
+    /**
+     * Exports the timeline to the file named by {@code de.cerberus.boot_trace},
+     * if the property is set.
+     */
+    public void exportIfRequested() {
+        String file = System.getProperty("de.cerberus.boot_trace");
+        if (file == null || file.isEmpty())
+            return;
+        try {
+            export(new File(file));
+            CerberusRegistry.getInstance().info("Boot timeline written to " + file);
+        } catch (IOException e) {
+            CerberusRegistry.getInstance().warning("Could not write boot timeline: " + e);
+        }
+    }
+
+    private static boolean separator(StringBuilder builder, boolean first) {
+        if (!first)
+            builder.append(',');
+        return false;
+    }
+
+    private static String micros(long nanos) {
+        return Long.toString(nanos / 1000) + '.' + (char) ('0' + (nanos / 100) % 10);
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if (c < 0x20)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        builder.append('"');
+    }
+
+    /**
+     * Start of a single service.
+     */
+    public static class Span {
+
+        private final String service;
+        private final long threadId;
+        private final String threadName;
+        private final long begin;
+        private long end;
+        private long dependencies;
+        private String error;
+
+        private Span(String service, long threadId, String threadName, long begin) {
+            this.service = service;
+            this.threadId = threadId;
+            this.threadName = threadName;
+            this.begin = begin;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * Returns the time spent starting the service, including its
+         * dependencies.
+         *
+         * @return duration in nanoseconds
+         */
+        public long getDuration() {
+            return end - begin;
+        }
+
+        /**
+         * Returns the time spent starting other services from within the
+         * start of this service.
+         *
+         * @return duration in nanoseconds
+         */
+        public long getDependencyTime() {
+            return dependencies;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    private static class Sample {
+
+        private final long time;
+        private final long loadedClasses;
+        private final long compilationTime;
+
+        private Sample(long time, long loadedClasses, long compilationTime) {
+            this.time = time;
+            this.loadedClasses = loadedClasses;
+            this.compilationTime = compilationTime;
+        }
+    }
+}
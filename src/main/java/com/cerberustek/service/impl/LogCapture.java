@@ -0,0 +1,123 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl;
+
+import com.cerberustek.Destroyable;
+import com.cerberustek.logger.CapturedLine;
+import com.cerberustek.logger.CerberusLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands lines captured from the standard streams to the logger in
+ * batches.
+ *
+ * Printing threads only enqueue their lines. A single daemon thread
+ * drains the queue and logs everything it finds in one go, so a burst
+ * of output costs one console flush instead of one per line. When the
+ * queue is full, the printing thread logs its line itself, which slows
+ * down the noisiest producers instead of dropping their output.
+ */
+public class LogCapture implements Destroyable {
+
+    private static final int QUEUE_SIZE = 8192;
+    private static final int BATCH_SIZE = 512;
+
+    private final CerberusLogger logger;
+    private final BlockingQueue<CapturedLine> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    public LogCapture(CerberusLogger logger) {
+        this.logger = logger;
+        thread = new Thread(this::drain, "Log Capture");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a line to be logged.
+     *
+     * Lines printed by threads that mirror their log, such as commands
+     * of a remote session, are logged right away, because the mirror
+     * only applies to the printing thread.
+     *
+     * @param line captured line
+     */
+    public void capture(CapturedLine line) {
+        if (!running || logger.isMirrored() || !queue.offer(line))
+            logger.loglnAll(Collections.singletonList(line));
+    }
+
+    private void drain() {
+        ArrayList<CapturedLine> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                CapturedLine line = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (line == null)
+                    continue;
+                batch.add(line);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                logger.loglnAll(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                logger.printlnErr("Failed to log captured output: " + e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Returns the thread draining the queue.
+     *
+     * @return thread
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * Stops the draining thread and logs all remaining lines.
+     */
+    @Override
+    public void destroy() {
+        running = false;
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        ArrayList<CapturedLine> rest = new ArrayList<>(queue.size());
+        queue.drainTo(rest);
+        if (!rest.isEmpty())
+            logger.loglnAll(rest);
+    }
+}
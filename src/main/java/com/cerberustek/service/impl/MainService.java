@@ -23,18 +23,30 @@
 
 package com.cerberustek.service.impl;
 
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.logger.CerberusLogger;
+import com.cerberustek.service.impl.command.BatchCommand;
 import com.cerberustek.service.impl.command.ExitCommand;
 import com.cerberustek.service.impl.command.HelpCommand;
 import com.cerberustek.service.impl.command.ServiceCommand;
+import com.cerberustek.service.impl.command.UsageCommand;
+import com.cerberustek.service.impl.terminal.RemoteConsole;
 import com.cerberustek.service.impl.terminal.SimpleTerminal;
+import com.cerberustek.service.impl.terminal.SimpleTerminalExecutor;
 import com.cerberustek.service.terminal.Terminal;
 import com.cerberustek.service.terminal.TerminalCommand;
+import com.cerberustek.service.terminal.TerminalExecutor;
 import com.cerberustek.service.CerberusService;
 import com.cerberustek.service.IllegalServiceStateException;
+import com.cerberustek.usr.PermissionHolder;
 import com.cerberustek.usr.impl.MasterPermissionHolder;
+import com.cerberustek.usr.impl.SimplePermissionHolder;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 
 public class MainService implements CerberusService {
 
@@ -46,11 +58,24 @@ public class MainService implements CerberusService {
     public static final String PERMISSION_HELP = PERMISSION_REGISTRY + ".help";
     public static final String PERMISSION_LIST = PERMISSION_REGISTRY + ".list";
     public static final String PERMISSION_EXIT = PERMISSION_STOP;
+    public static final String PERMISSION_BATCH = PERMISSION_REGISTRY + ".batch";
+    public static final String PERMISSION_USAGE = PERMISSION_REGISTRY + ".usage";
+    /** All permissions checked by the main service and its commands */
+    public static final List<String> PERMISSIONS = List.of(PERMISSION_REGISTRY, PERMISSION_STOP, PERMISSION_START,
+            PERMISSION_TIME, PERMISSION_STATUS, PERMISSION_HELP, PERMISSION_LIST, PERMISSION_BATCH, PERMISSION_USAGE);
+    /** Permissions of remote console sessions, unless configured otherwise */
+    public static final String REMOTE_CONSOLE_PERMISSIONS = String.join(",", PERMISSION_REGISTRY, PERMISSION_HELP,
+            PERMISSION_STATUS, PERMISSION_LIST, PERMISSION_TIME, PERMISSION_USAGE);
 
     private final boolean useTerminal;
 
     private Thread mainThread;
     private Terminal terminal;
+    private TerminalExecutor executor;
+    private RemoteConsole remoteConsole;
+    private LogCapture logCapture;
+    private ServiceWatchdog watchdog;
+    private ServiceUsageSampler usageSampler;
 
     public MainService(boolean useTerminal) {
         this.useTerminal = useTerminal;
@@ -59,34 +84,121 @@ public class MainService implements CerberusService {
     @Override
     public void start() {
         mainThread = Thread.currentThread();
+        CerberusLogger logger = CerberusRegistry.getInstance().getLogger();
+        if (logger != null)
+            logger.getRateLimiter().init();
 
         if (useTerminal) {
-            if (System.getProperty("de.cerberus.cap_out_stream", "true").equals("true"))
-                System.setOut(new MainServicePrintStream(System.out, false));
-            if (System.getProperty("de.cerberus.cap_err_stream", "true").equals("true"))
-                System.setErr(new MainServicePrintStream(System.err, true));
+            boolean captureOut = System.getProperty("de.cerberus.cap_out_stream", "true").equals("true");
+            boolean captureErr = System.getProperty("de.cerberus.cap_err_stream", "true").equals("true");
+            if ((captureOut || captureErr) && CerberusRegistry.getInstance().getLogger() != null)
+                logCapture = new LogCapture(CerberusRegistry.getInstance().getLogger());
+            if (captureOut && logCapture != null)
+                System.setOut(new MainServicePrintStream(System.out, false, logCapture));
+            if (captureErr && logCapture != null)
+                System.setErr(new MainServicePrintStream(System.err, true, logCapture));
 
             if (System.getProperty("de.cerberus.use_terminal", "true").equals("true")) {
                 terminal = new SimpleTerminal(System.out, System.err, System.in, new MasterPermissionHolder());
+                executor = terminal.getExecutor();
+                registerDefaultCommands(executor);
                 terminal.init();
-
-                terminal.getExecutor().registerCommand(new ServiceCommand());
-                terminal.getExecutor().registerCommand(new HelpCommand());
-                terminal.getExecutor().registerCommand(new ExitCommand());
             }
         }
+
+        String port = System.getProperty("de.cerberus.remote_console_port");
+        if (port != null)
+            startRemoteConsole(port);
+
+        if (System.getProperty("de.cerberus.watchdog", "false").equals("true"))
+            watchdog = new ServiceWatchdog(CerberusRegistry.getInstance());
+        if (System.getProperty("de.cerberus.usage_sampling", "true").equals("true"))
+            usageSampler = new ServiceUsageSampler(CerberusRegistry.getInstance());
+    }
+
+    private void registerDefaultCommands(TerminalExecutor executor) {
+        executor.registerCommand(new ServiceCommand());
+        executor.registerCommand(new HelpCommand());
+        executor.registerCommand(new ExitCommand());
+        executor.registerCommand(new BatchCommand());
+        executor.registerCommand(new UsageCommand());
+    }
+
+    /**
+     * Starts the remote console on the loopback interface. Sessions
+     * authenticate with the token set in the system property
+     * {@code de.cerberus.remote_console_token}; without a token the
+     * console is not started.
+     *
+     * Every session gets its own permission holder with the rules listed
+     * in {@code de.cerberus.remote_console_permissions}, separated by
+     * commas, where a leading {@code -} denies a permission. By default
+     * sessions can only inspect the registry, see
+     * {@link #REMOTE_CONSOLE_PERMISSIONS}. Sessions only get all
+     * permissions if {@code de.cerberus.remote_console_master} is set
+     * to {@code true}.
+     */
+    private void startRemoteConsole(String port) {
+        String token = System.getProperty("de.cerberus.remote_console_token");
+        if (token == null || token.isEmpty()) {
+            CerberusRegistry.getInstance().critical("Remote console requires de.cerberus.remote_console_token to be set!");
+            return;
+        }
+
+        int portNumber;
+        try {
+            portNumber = Integer.parseInt(port);
+        } catch (NumberFormatException e) {
+            CerberusRegistry.getInstance().critical("Invalid remote console port: " + port);
+            return;
+        }
+
+        if (executor == null) {
+            executor = new SimpleTerminalExecutor();
+            executor.init();
+            registerDefaultCommands(executor);
+        }
+
+        byte[] expected = token.getBytes(StandardCharsets.UTF_8);
+        boolean master = System.getProperty("de.cerberus.remote_console_master", "false").equals("true");
+        String rules = System.getProperty("de.cerberus.remote_console_permissions", REMOTE_CONSOLE_PERMISSIONS);
+        remoteConsole = new RemoteConsole(executor, portNumber, credentials -> {
+            if (!MessageDigest.isEqual(expected, credentials.getBytes(StandardCharsets.UTF_8)))
+                return null;
+            return master ? new MasterPermissionHolder() : remoteHolder(rules);
+        });
+        remoteConsole.init();
+    }
+
+    /**
+     * Creates the permission holder of a remote console session.
+     *
+     * @param rules permissions separated by commas, denied with a
+     *              leading {@code -}
+     * @return permission holder
+     */
+    private static PermissionHolder remoteHolder(String rules) {
+        SimplePermissionHolder holder = new SimplePermissionHolder();
+        for (String rule : rules.split(",")) {
+            rule = rule.trim();
+            if (rule.startsWith("-"))
+                holder.deny(rule.substring(1));
+            else if (!rule.isEmpty())
+                holder.grad(rule);
+        }
+        return holder;
     }
 
     public void registerCommand(TerminalCommand command) {
-        if (terminal != null)
-            terminal.getExecutor().registerCommand(command);
+        if (executor != null)
+            executor.registerCommand(command);
         else
             throw new IllegalServiceStateException(this);
     }
 
     public void unregisterCommand(TerminalCommand command) {
-        if (terminal != null)
-            terminal.getExecutor().unregisterCommand(command);
+        if (executor != null)
+            executor.unregisterCommand(command);
         else
             throw new IllegalServiceStateException(this);
     }
@@ -97,6 +209,17 @@ public class MainService implements CerberusService {
 
         if (terminal != null)
             terminal.destroy();
+        if (remoteConsole != null)
+            remoteConsole.destroy();
+        if (logCapture != null)
+            logCapture.destroy();
+        if (watchdog != null)
+            watchdog.destroy();
+        if (usageSampler != null)
+            usageSampler.destroy();
+        CerberusLogger logger = CerberusRegistry.getInstance().getLogger();
+        if (logger != null)
+            logger.getRateLimiter().destroy();
     }
 
     @Override
@@ -112,10 +235,51 @@ public class MainService implements CerberusService {
 
         if (terminal != null)
             threads.addAll(terminal.getThreads());
+        if (remoteConsole != null)
+            threads.addAll(remoteConsole.getThreads());
+        if (logCapture != null)
+            threads.add(logCapture.getThread());
+        if (watchdog != null && watchdog.getThread() != null)
+            threads.add(watchdog.getThread());
+        if (usageSampler != null && usageSampler.getThread() != null)
+            threads.add(usageSampler.getThread());
+        CerberusLogger logger = CerberusRegistry.getInstance().getLogger();
+        if (logger != null && logger.getRateLimiter().getThread() != null)
+            threads.add(logger.getRateLimiter().getThread());
         return threads;
     }
 
     public Terminal getTerminal() {
         return terminal;
     }
+
+    /**
+     * Returns the watchdog restarting failed services.
+     *
+     * @return watchdog or null, if it has not been enabled through the
+     *      system property {@code de.cerberus.watchdog}
+     */
+    public ServiceWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Returns the sampler measuring the resources used by each service.
+     *
+     * @return sampler or null, if it is disabled through the system
+     *      property {@code de.cerberus.usage_sampling}
+     */
+    public ServiceUsageSampler getUsageSampler() {
+        return usageSampler;
+    }
+
+    /**
+     * Returns the executor holding the commands of the terminal and
+     * the remote console.
+     *
+     * @return command executor, or null if neither is in use
+     */
+    public TerminalExecutor getExecutor() {
+        return executor;
+    }
 }
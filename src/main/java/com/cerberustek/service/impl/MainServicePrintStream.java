@@ -24,36 +24,116 @@
 package com.cerberustek.service.impl;
 
 import com.cerberustek.CerberusRegistry;
+import com.cerberustek.logger.CapturedLine;
 import com.cerberustek.logger.Level;
+import com.cerberustek.service.CerberusService;
+import com.cerberustek.service.ServiceNotFoundException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
 
+/**
+ * Print stream replacing {@code System.out} or {@code System.err}, which
+ * turns everything printed to it into log lines.
+ *
+ * All print, println, printf, append and write calls are collected in
+ * a buffer of the printing thread, so output of concurrent threads is not
+ * mixed up. Every completed line is attributed to the service owning the
+ * printing thread and handed to a {@link LogCapture}. The owner of a
+ * thread is cached for a second, or until a service is registered,
+ * started or stopped.
+ */
 public class MainServicePrintStream extends PrintStream {
 
+    /** Lines longer than this are split, so a stream without line breaks cannot grow the buffer forever */
+    private static final int MAX_LINE = 8192;
+    private static final long ATTRIBUTION_TIMEOUT = 1000;
+
     private final boolean errorStream;
+    private final PrintStream target;
+    private final LogCapture capture;
+    private final Charset charset = Charset.defaultCharset();
+    private final ThreadLocal<LineBuffer> buffers = ThreadLocal.withInitial(LineBuffer::new);
 
-    public MainServicePrintStream(PrintStream printStream, boolean isErrorStream) {
+    public MainServicePrintStream(PrintStream printStream, boolean isErrorStream, LogCapture capture) {
         super(printStream);
         this.errorStream = isErrorStream;
+        this.target = printStream;
+        this.capture = capture;
+    }
+
+    /**
+     * Returns the stream that has been captured by this stream.
+     *
+     * @return original stream
+     */
+    public PrintStream getTarget() {
+        return target;
     }
 
     private boolean isErrorStream() {
         return errorStream;
     }
 
+    @Override
+    public void print(boolean b) {
+        collect(b ? "true" : "false");
+    }
+
+    @Override
+    public void print(char c) {
+        collect(String.valueOf(c));
+    }
+
+    @Override
+    public void print(int i) {
+        collect(Integer.toString(i));
+    }
+
+    @Override
+    public void print(long l) {
+        collect(Long.toString(l));
+    }
+
+    @Override
+    public void print(float f) {
+        collect(Float.toString(f));
+    }
+
+    @Override
+    public void print(double d) {
+        collect(Double.toString(d));
+    }
+
+    @Override
+    public void print(char[] s) {
+        collect(new String(s));
+    }
+
+    @Override
+    public void print(String s) {
+        collect(s == null ? "null" : s);
+    }
+
+    @Override
+    public void print(Object obj) {
+        collect(String.valueOf(obj));
+    }
+
     @Override
     public void println() {
-        print("\n");
+        newLine(buffers.get());
     }
 
     @Override
     public void println(boolean x) {
-        println(Boolean.toString(x));
+        println(x ? "true" : "false");
     }
 
     @Override
     public void println(char x) {
-        println(Character.toString(x));
+        println(String.valueOf(x));
     }
 
     @Override
@@ -83,17 +163,136 @@ public class MainServicePrintStream extends PrintStream {
 
     @Override
     public void println(Object x) {
-        if (x != null)
-            println(x.toString());
-        else
-            println("null");
+        println(String.valueOf(x));
     }
 
     @Override
     public void println(String x) {
-        if (isErrorStream())
-            CerberusRegistry.getInstance().log(Level.CRITICAL, x, 3);
+        collect(x == null ? "null" : x);
+        newLine(buffers.get());
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq) {
+        collect(csq == null ? "null" : csq);
+        return this;
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq, int start, int end) {
+        collect((csq == null ? "null" : csq).subSequence(start, end));
+        return this;
+    }
+
+    @Override
+    public PrintStream append(char c) {
+        print(c);
+        return this;
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buf) {
+        write(buf, 0, buf.length);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        LineBuffer buffer = buffers.get();
+        int start = off;
+        for (int i = off; i < off + len; i++) {
+            if (buf[i] == '\n') {
+                buffer.bytes.write(buf, start, i - start);
+                newLine(buffer);
+                start = i + 1;
+            }
+        }
+        buffer.bytes.write(buf, start, off + len - start);
+        if (buffer.bytes.size() > MAX_LINE)
+            newLine(buffer);
+    }
+
+    @Override
+    public void flush() {
+        target.flush();
+    }
+
+    private void collect(CharSequence s) {
+        LineBuffer buffer = buffers.get();
+        buffer.decodeBytes(charset);
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') {
+                buffer.line.append(s, start, i);
+                newLine(buffer);
+                start = i + 1;
+            }
+        }
+        buffer.line.append(s, start, s.length());
+        if (buffer.line.length() > MAX_LINE)
+            newLine(buffer);
+    }
+
+    private void newLine(LineBuffer buffer) {
+        buffer.decodeBytes(charset);
+        StringBuilder line = buffer.line;
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r')
+            length--;
+
+        String message = line.substring(0, length);
+        if (line.capacity() > MAX_LINE * 2)
+            buffer.line = new StringBuilder(128);
         else
-            CerberusRegistry.getInstance().log(Level.INFO, x, 3);
+            line.setLength(0);
+
+        capture.capture(new CapturedLine(buffer.service(), isErrorStream() ? Level.CRITICAL : Level.INFO,
+                message, System.currentTimeMillis()));
+    }
+
+    /**
+     * Partial line of a thread, together with the service the thread
+     * belongs to.
+     */
+    private static class LineBuffer {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private StringBuilder line = new StringBuilder(128);
+
+        private Class<? extends CerberusService> service;
+        private long serviceVersion = -1;
+        private long resolved;
+
+        /**
+         * Moves raw bytes written to the stream into the line. Bytes are
+         * only decoded at line ends or before text is printed, so
+         * multi-byte characters written in pieces stay intact.
+         */
+        private void decodeBytes(Charset charset) {
+            if (bytes.size() == 0)
+                return;
+            line.append(new String(bytes.toByteArray(), charset));
+            bytes.reset();
+        }
+
+        private Class<? extends CerberusService> service() {
+            CerberusRegistry registry = CerberusRegistry.getInstance();
+            long version = registry.getServiceVersion();
+            long now = System.currentTimeMillis();
+            if (service == null || version != serviceVersion || now - resolved > ATTRIBUTION_TIMEOUT) {
+                try {
+                    service = registry.getService(Thread.currentThread()).serviceClass();
+                } catch (ServiceNotFoundException e) {
+                    service = MainService.class;
+                }
+                serviceVersion = version;
+                resolved = now;
+            }
+            return service;
+        }
     }
 }
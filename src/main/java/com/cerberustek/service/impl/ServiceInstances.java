@@ -0,0 +1,199 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl;
+
+import com.cerberustek.service.CerberusService;
+import com.cerberustek.service.LoadAware;
+import com.cerberustek.service.SelectionStrategy;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All instances registered for one service class.
+ *
+ * Instances are kept in registration order, the first one being the
+ * primary instance returned by lookups without a key. Further instances
+ * are registered under a key. Every change creates a new immutable
+ * snapshot, so lookups and selections never lock.
+ *
+ * @param <T> service type
+ */
+public final class ServiceInstances<T extends CerberusService> {
+
+    /** Points on the hash ring per instance */
+    private static final int VIRTUAL_NODES = 64;
+
+    private volatile Snapshot<T> snapshot = new Snapshot<>(Collections.emptyList(), Collections.emptyList());
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Adds an instance.
+     *
+     * @param service service instance
+     * @param key key of the instance, or null for the primary instance
+     * @return false if the key, or the primary instance, is already taken
+     */
+    public synchronized boolean add(T service, Object key) {
+        Snapshot<T> current = snapshot;
+        if (key == null ? !current.instances.isEmpty() : current.byKey.containsKey(key))
+            return false;
+
+        ArrayList<T> instances = new ArrayList<>(current.instances);
+        ArrayList<Object> keys = new ArrayList<>(current.keys);
+        instances.add(service);
+        keys.add(key);
+        snapshot = new Snapshot<>(instances, keys);
+        return true;
+    }
+
+    /**
+     * Removes the instance registered under a key.
+     *
+     * @param key key of the instance
+     * @return removed instance or null
+     */
+    public synchronized T remove(Object key) {
+        Snapshot<T> current = snapshot;
+        int index = current.keys.indexOf(key);
+        if (key == null || index < 0)
+            return null;
+
+        ArrayList<T> instances = new ArrayList<>(current.instances);
+        ArrayList<Object> keys = new ArrayList<>(current.keys);
+        T removed = instances.remove(index);
+        keys.remove(index);
+        snapshot = new Snapshot<>(instances, keys);
+        return removed;
+    }
+
+    public T primary() {
+        List<T> instances = snapshot.instances;
+        return instances.isEmpty() ? null : instances.get(0);
+    }
+
+    public T get(Object key) {
+        return snapshot.byKey.get(key);
+    }
+
+    public T get(int index) {
+        return snapshot.instances.get(index);
+    }
+
+    public List<T> all() {
+        return snapshot.instances;
+    }
+
+    public int size() {
+        return snapshot.instances.size();
+    }
+
+    /**
+     * Picks an instance.
+     *
+     * @param strategy selection strategy
+     * @param key key to hash for {@link SelectionStrategy#CONSISTENT_HASH}
+     * @return instance or null, if there are no instances
+     */
+    public T select(SelectionStrategy strategy, Object key) {
+        Snapshot<T> current = snapshot;
+        List<T> instances = current.instances;
+        if (instances.isEmpty())
+            return null;
+
+        switch (strategy) {
+            case ROUND_ROBIN:
+                return instances.get(Math.floorMod(next.getAndIncrement(), instances.size()));
+            case LEAST_LOADED: {
+                // Start at a rotating position, so ties are spread over the instances
+                int start = Math.floorMod(next.getAndIncrement(), instances.size());
+                T best = null;
+                int bestDepth = Integer.MAX_VALUE;
+                for (int i = 0; i < instances.size(); i++) {
+                    T instance = instances.get((start + i) % instances.size());
+                    int depth = instance instanceof LoadAware ? ((LoadAware) instance).getQueueDepth() : 0;
+                    if (depth < bestDepth) {
+                        best = instance;
+                        bestDepth = depth;
+                    }
+                }
+                return best;
+            }
+            case CONSISTENT_HASH: {
+                long hash = mix(Objects.hashCode(key));
+                int index = Arrays.binarySearch(current.ring, hash);
+                if (index < 0)
+                    index = -index - 1;
+                if (index == current.ring.length)
+                    index = 0;
+                return instances.get(current.owners[index]);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown selection strategy: " + strategy);
+        }
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static final class Snapshot<T> {
+
+        private final List<T> instances;
+        private final List<Object> keys;
+        private final Map<Object, T> byKey = new HashMap<>();
+        /** Sorted hashes of the virtual nodes, and the instance owning each of them */
+        private final long[] ring;
+        private final int[] owners;
+
+        private Snapshot(List<T> instances, List<Object> keys) {
+            this.instances = Collections.unmodifiableList(instances);
+            this.keys = Collections.unmodifiableList(keys);
+
+            long[][] nodes = new long[instances.size() * VIRTUAL_NODES][];
+            for (int i = 0; i < instances.size(); i++) {
+                Object key = keys.get(i);
+                if (key != null)
+                    byKey.put(key, instances.get(i));
+
+                // Nodes depend on the key only, so instances keep their place when others come and go
+                long seed = key != null ? key.hashCode() : -1;
+                for (int v = 0; v < VIRTUAL_NODES; v++)
+                    nodes[i * VIRTUAL_NODES + v] = new long[] { mix((seed << 32) ^ mix(v + 1)), i };
+            }
+            Arrays.sort(nodes, Comparator.comparingLong(node -> node[0]));
+            ring = new long[nodes.length];
+            owners = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                ring[i] = nodes[i][0];
+                owners[i] = (int) nodes[i][1];
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl;
+
+import com.cerberustek.service.CerberusService;
+
+import java.util.*;
+
+/**
+ * Immutable index of the simple names of service classes.
+ *
+ * A name is looked up in four steps, from the strictest to the loosest
+ * match: the exact simple name, the simple name ignoring case, a prefix
+ * of the simple name and finally any part of the simple name. The first
+ * step that matches any service decides the result. Parts of names are
+ * found through an index of all three character sequences of the names,
+ * so only names sharing every sequence of the searched part are compared.
+ *
+ * Registering or removing a service creates a new index, lookups never
+ * lock.
+ */
+public final class ServiceNameIndex {
+
+    public static final ServiceNameIndex EMPTY = new ServiceNameIndex(new CerberusService[0]);
+
+    private static final int GRAM = 3;
+
+    private final CerberusService[] services;
+    private final String[] lowerNames;
+    private final Map<String, List<CerberusService>> exact = new HashMap<>();
+    private final Map<String, List<CerberusService>> ignoreCase = new HashMap<>();
+    /** Indices of the services sorted by lower case name */
+    private final int[] sorted;
+    /** Indices of the services containing each three character sequence, ascending */
+    private final Map<String, int[]> grams = new HashMap<>();
+
+    private ServiceNameIndex(CerberusService[] services) {
+        this.services = services;
+        lowerNames = new String[services.length];
+
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for (int i = 0; i < services.length; i++) {
+            String name = services[i].serviceClass().getSimpleName();
+            String lower = name.toLowerCase(Locale.ROOT);
+            lowerNames[i] = lower;
+            exact.computeIfAbsent(name, k -> new ArrayList<>(1)).add(services[i]);
+            ignoreCase.computeIfAbsent(lower, k -> new ArrayList<>(1)).add(services[i]);
+
+            for (int j = 0; j + GRAM <= lower.length(); j++) {
+                List<Integer> posting = postings.computeIfAbsent(lower.substring(j, j + GRAM),
+                        k -> new ArrayList<>());
+                if (posting.isEmpty() || posting.get(posting.size() - 1) != i)
+                    posting.add(i);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : postings.entrySet())
+            grams.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+
+        sorted = new int[services.length];
+        Integer[] order = new Integer[services.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparing(i -> lowerNames[i]));
+        for (int i = 0; i < order.length; i++)
+            sorted[i] = order[i];
+    }
+
+    /**
+     * Returns an index containing all services of this index and the
+     * specified service.
+     *
+     * @param service service to add
+     * @return new index
+     */
+    public ServiceNameIndex with(CerberusService service) {
+        CerberusService[] extended = Arrays.copyOf(services, services.length + 1);
+        extended[services.length] = service;
+        return new ServiceNameIndex(extended);
+    }
+
+    /**
+     * Returns an index containing all services of this index except the
+     * specified service.
+     *
+     * @param service service to remove
+     * @return new index
+     */
+    public ServiceNameIndex without(CerberusService service) {
+        CerberusService[] remaining = new CerberusService[services.length];
+        int size = 0;
+        for (CerberusService current : services) {
+            if (current != service)
+                remaining[size++] = current;
+        }
+        return size == services.length ? this : new ServiceNameIndex(Arrays.copyOf(remaining, size));
+    }
+
+    /**
+     * Returns the services matching the name in the strictest step that
+     * has any match.
+     *
+     * @param name name or part of the simple name of a service class
+     * @return matching services, empty if there are none
+     */
+    public List<CerberusService> find(String name) {
+        List<CerberusService> matches = exact.get(name);
+        if (matches != null)
+            return Collections.unmodifiableList(matches);
+
+        String lower = name.toLowerCase(Locale.ROOT);
+        matches = ignoreCase.get(lower);
+        if (matches != null)
+            return Collections.unmodifiableList(matches);
+
+        matches = findPrefix(lower);
+        if (!matches.isEmpty())
+            return matches;
+        return findPart(lower);
+    }
+
+    private List<CerberusService> findPrefix(String prefix) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lowerNames[sorted[middle]].compareTo(prefix) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        ArrayList<CerberusService> matches = new ArrayList<>(1);
+        for (int i = low; i < sorted.length && lowerNames[sorted[i]].startsWith(prefix); i++)
+            matches.add(services[sorted[i]]);
+        return matches;
+    }
+
+    private List<CerberusService> findPart(String part) {
+        ArrayList<CerberusService> matches = new ArrayList<>(1);
+        if (part.length() < GRAM) {
+            for (int i = 0; i < services.length; i++) {
+                if (lowerNames[i].contains(part))
+                    matches.add(services[i]);
+            }
+            return matches;
+        }
+
+        int[][] postings = new int[part.length() - GRAM + 1][];
+        for (int j = 0; j < postings.length; j++) {
+            postings[j] = grams.get(part.substring(j, j + GRAM));
+            if (postings[j] == null)
+                return matches;
+        }
+
+        // Intersect the services of all sequences, starting with the rarest
+        Arrays.sort(postings, Comparator.comparingInt(posting -> posting.length));
+        int[] candidates = postings[0];
+        for (int j = 1; j < postings.length && candidates.length > 0; j++)
+            candidates = intersect(candidates, postings[j]);
+
+        for (int index : candidates) {
+            if (lowerNames[index].contains(part))
+                matches.add(services[index]);
+        }
+        return matches;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j])
+                i++;
+            else if (a[i] > b[j])
+                j++;
+            else {
+                out[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, size);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl;
+
+import com.cerberustek.service.CerberusService;
+
+import java.util.*;
+
+/**
+ * Immutable index of the services implementing each type.
+ *
+ * When a service is added, every superclass and interface of its
+ * service class and of its implementation is resolved once, so looking
+ * up the services of a type is a single map lookup without any
+ * reflection. Services are listed in the order they have been added.
+ *
+ * Registering a service creates a new index, lookups never lock.
+ */
+public final class ServiceTypeIndex {
+
+    public static final ServiceTypeIndex EMPTY = new ServiceTypeIndex(Collections.emptyMap());
+
+    private final Map<Class<?>, List<CerberusService>> types;
+
+    private ServiceTypeIndex(Map<Class<?>, List<CerberusService>> types) {
+        this.types = types;
+    }
+
+    /**
+     * Creates an index of the specified services.
+     *
+     * @param services services to index
+     * @return new index
+     */
+    public static ServiceTypeIndex of(Collection<? extends CerberusService> services) {
+        ServiceTypeIndex index = EMPTY;
+        for (CerberusService service : services)
+            index = index.with(service);
+        return index;
+    }
+
+    /**
+     * Returns a new index containing all services of this index and
+     * the specified service.
+     *
+     * @param service service to add
+     * @return new index
+     */
+    public ServiceTypeIndex with(CerberusService service) {
+        Set<Class<?>> supertypes = new HashSet<>();
+        collect(service.serviceClass(), supertypes);
+        collect(service.getClass(), supertypes);
+
+        HashMap<Class<?>, List<CerberusService>> copy = new HashMap<>(types);
+        for (Class<?> type : supertypes) {
+            List<CerberusService> current = copy.get(type);
+            if (current == null) {
+                copy.put(type, List.of(service));
+            } else {
+                ArrayList<CerberusService> list = new ArrayList<>(current.size() + 1);
+                list.addAll(current);
+                list.add(service);
+                copy.put(type, Collections.unmodifiableList(list));
+            }
+        }
+        return new ServiceTypeIndex(copy);
+    }
+
+    /**
+     * Returns a new index containing all services of this index except
+     * the specified service.
+     *
+     * @param service service to remove
+     * @return new index
+     */
+    public ServiceTypeIndex without(CerberusService service) {
+        HashMap<Class<?>, List<CerberusService>> copy = new HashMap<>(types.size());
+        for (Map.Entry<Class<?>, List<CerberusService>> entry : types.entrySet()) {
+            List<CerberusService> current = entry.getValue();
+            if (!current.contains(service)) {
+                copy.put(entry.getKey(), current);
+                continue;
+            }
+
+            ArrayList<CerberusService> list = new ArrayList<>(current);
+            list.remove(service);
+            if (!list.isEmpty())
+                copy.put(entry.getKey(), Collections.unmodifiableList(list));
+        }
+        return new ServiceTypeIndex(copy);
+    }
+
+    /**
+     * Returns all services that are assignable to the specified type.
+     *
+     * @param type class or interface
+     * @return matching services, empty if there are none
+     */
+    public List<CerberusService> find(Class<?> type) {
+        return types.getOrDefault(type, Collections.emptyList());
+    }
+
+    private static void collect(Class<?> type, Set<Class<?>> supertypes) {
+        if (type == null || type == Object.class || !supertypes.add(type))
+            return;
+        collect(type.getSuperclass(), supertypes);
+        for (Class<?> i : type.getInterfaces())
+            collect(i, supertypes);
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.cerberustek.service.impl;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.Destroyable;
+import com.cerberustek.service.CerberusService;
+import com.cerberustek.service.ServiceUsage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU time and the allocations of the threads of every
+ * service.
+ *
+ * Every sample reads the CPU time and the allocated bytes of all threads
+ * owned by running services, with one call each if the JVM supports
+ * reading many threads at once, and attributes the change since the
+ * previous sample to the owning services. Rates are averaged over the
+ * last samples of the window. Threads started since the previous sample
+ * count with everything they have used so far, the resources used by
+ * threads that have terminated since are lost.
+ *
+ * The results are published as an immutable list, so reading them never
+ * waits for the sampler.
+ */
+public class ServiceUsageSampler implements Destroyable {
+
+    private final CerberusRegistry registry;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    /** Reads many threads at once and measures allocations, null if the JVM does not support it */
+    private final com.sun.management.ThreadMXBean extendedBean;
+    private final boolean cpuSupported;
+    private final boolean allocationSupported;
+    private final int window;
+    private final ScheduledExecutorService executor;
+
+    private volatile Thread thread;
+    private volatile List<ServiceUsage> usages = Collections.emptyList();
+
+    /** CPU time and allocated bytes of every thread at the last sample, only used by the sampling thread */
+    private Map<Long, long[]> lastThreads = new HashMap<>();
+    private final Map<Class<? extends CerberusService>, Usage> services = new HashMap<>();
+    private long lastSample;
+
+    /**
+     * Creates and starts a sampler.
+     *
+     * @param registry registry to sample the services of
+     * @param intervalMillis time between two samples
+     * @param window amount of samples the rates are averaged over
+     */
+    public ServiceUsageSampler(CerberusRegistry registry, long intervalMillis, int window) {
+        this.registry = registry;
+        this.window = Math.max(1, window);
+        extendedBean = threadBean instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threadBean : null;
+        cpuSupported = enableCpuTime();
+        allocationSupported = enableAllocatedMemory();
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "Service Usage Sampler");
+            t.setDaemon(true);
+            thread = t;
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates and starts a sampler configured through the system
+     * properties {@code de.cerberus.usage_interval} in milliseconds
+     * and {@code de.cerberus.usage_window} in samples.
+     *
+     * @param registry registry to sample the services of
+     */
+    public ServiceUsageSampler(CerberusRegistry registry) {
+        this(registry, Math.max(10, Long.getLong("de.cerberus.usage_interval", 5000)),
+                Integer.getInteger("de.cerberus.usage_window", 12));
+    }
+
+    /**
+     * Returns the usage of all running services, the most CPU consuming
+     * service first.
+     *
+     * @return usage of all services
+     */
+    public List<ServiceUsage> getUsages() {
+        return usages;
+    }
+
+    /**
+     * Returns the usage of a service.
+     *
+     * @param serviceClass ServiceClass
+     * @return usage or null, if the service has not been sampled while running
+     */
+    public ServiceUsage getUsage(Class<? extends CerberusService> serviceClass) {
+        for (ServiceUsage usage : usages) {
+            if (usage.serviceClass() == serviceClass)
+                return usage;
+        }
+        return null;
+    }
+
+    /**
+     * Returns rather or not the JVM measures the allocations of threads.
+     *
+     * @return allocations supported?
+     */
+    public boolean isAllocationSupported() {
+        return allocationSupported;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private void sample() {
+        try {
+            sample(System.nanoTime());
+        } catch (RuntimeException e) {
+            registry.warning("Could not sample service usage: " + e);
+        }
+    }
+
+    private void sample(long now) {
+        boolean first = lastSample == 0;
+        long elapsed = now - lastSample;
+        lastSample = now;
+
+        // Threads of all running services, each thread is read only once
+        HashMap<Class<? extends CerberusService>, List<Thread>> owned = new HashMap<>();
+        HashMap<Long, Integer> indices = new HashMap<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (CerberusService service : registry.findServices(CerberusService.class)) {
+            Class<? extends CerberusService> serviceClass = service.serviceClass();
+            if (!registry.isRunning(serviceClass))
+                continue;
+
+            ArrayList<Thread> list = new ArrayList<>();
+            for (CerberusService instance : registry.getServices(serviceClass)) {
+                Collection<Thread> instanceThreads = instance.getThreads();
+                if (instanceThreads == null)
+                    continue;
+                for (Thread t : instanceThreads) {
+                    if (t == null || !t.isAlive())
+                        continue;
+                    list.add(t);
+                    if (indices.putIfAbsent(t.getId(), threads.size()) == null)
+                        threads.add(t);
+                }
+            }
+            owned.put(serviceClass, list);
+        }
+
+        long[] ids = new long[threads.size()];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = threads.get(i).getId();
+        long[] cpuTimes = cpuTimes(ids);
+        long[] allocated = allocatedBytes(ids);
+
+        HashMap<Long, long[]> current = new HashMap<>(ids.length * 2);
+        long[] cpuDeltas = new long[ids.length];
+        long[] allocationDeltas = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            current.put(ids[i], new long[] {cpuTimes[i], allocated[i]});
+            long[] last = lastThreads.get(ids[i]);
+            if (last == null && first)
+                continue;
+            cpuDeltas[i] = delta(cpuTimes[i], last != null ? last[0] : 0);
+            allocationDeltas[i] = delta(allocated[i], last != null ? last[1] : 0);
+        }
+        lastThreads = current;
+        if (first)
+            elapsed = 0;
+
+        services.keySet().retainAll(owned.keySet());
+        ArrayList<ServiceUsage> result = new ArrayList<>(owned.size());
+        for (Map.Entry<Class<? extends CerberusService>, List<Thread>> entry : owned.entrySet()) {
+            long cpu = 0;
+            long allocation = 0;
+            for (Thread t : entry.getValue()) {
+                int index = indices.get(t.getId());
+                cpu += cpuDeltas[index];
+                allocation += allocationDeltas[index];
+            }
+
+            Usage usage = services.computeIfAbsent(entry.getKey(), k -> new Usage(window));
+            usage.add(cpu, allocation, elapsed);
+            result.add(usage.toServiceUsage(entry.getKey(), entry.getValue().size(), allocationSupported));
+        }
+        result.sort(Comparator.comparingDouble(ServiceUsage::getCpuLoad).reversed());
+        usages = Collections.unmodifiableList(result);
+    }
+
+    private static long delta(long value, long last) {
+        return value < 0 || last < 0 || value < last ? 0 : value - last;
+    }
+
+    private long[] cpuTimes(long[] ids) {
+        if (!cpuSupported) {
+            long[] out = new long[ids.length];
+            Arrays.fill(out, -1);
+            return out;
+        }
+        if (extendedBean != null)
+            return extendedBean.getThreadCpuTime(ids);
+
+        long[] out = new long[ids.length];
+        for (int i = 0; i < ids.length; i++)
+            out[i] = threadBean.getThreadCpuTime(ids[i]);
+        return out;
+    }
+
+    private long[] allocatedBytes(long[] ids) {
+        if (!allocationSupported) {
+            long[] out = new long[ids.length];
+            Arrays.fill(out, -1);
+            return out;
+        }
+        return extendedBean.getThreadAllocatedBytes(ids);
+    }
+
+    private boolean enableCpuTime() {
+        try {
+            if (!threadBean.isThreadCpuTimeSupported())
+                return false;
+            if (!threadBean.isThreadCpuTimeEnabled())
+                threadBean.setThreadCpuTimeEnabled(true);
+            return true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    private boolean enableAllocatedMemory() {
+        try {
+            if (extendedBean == null || !extendedBean.isThreadAllocatedMemorySupported())
+                return false;
+            if (!extendedBean.isThreadAllocatedMemoryEnabled())
+                extendedBean.setThreadAllocatedMemoryEnabled(true);
+            return true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Usage of a service over the last samples, kept in a ring so the
+     * sums are updated in constant time.
+     */
+    private static final class Usage {
+
+        private final long[] cpu;
+        private final long[] allocation;
+        private final long[] elapsed;
+        private int next;
+        private long cpuSum;
+        private long allocationSum;
+        private long elapsedSum;
+        private long cpuTotal;
+        private long allocationTotal;
+
+        private Usage(int window) {
+            cpu = new long[window];
+            allocation = new long[window];
+            elapsed = new long[window];
+        }
+
+        private void add(long cpuDelta, long allocationDelta, long elapsedDelta) {
+            cpuSum += cpuDelta - cpu[next];
+            allocationSum += allocationDelta - allocation[next];
+            elapsedSum += elapsedDelta - elapsed[next];
+            cpu[next] = cpuDelta;
+            allocation[next] = allocationDelta;
+            elapsed[next] = elapsedDelta;
+            next = (next + 1) % cpu.length;
+
+            cpuTotal += cpuDelta;
+            allocationTotal += allocationDelta;
+        }
+
+        private ServiceUsage toServiceUsage(Class<? extends CerberusService> serviceClass, int threads,
+                                            boolean allocationSupported) {
+            double load = elapsedSum > 0 ? (double) cpuSum / elapsedSum : 0;
+            double rate = elapsedSum > 0 ? allocationSum * 1e9 / elapsedSum : 0;
+            return new ServiceUsage(serviceClass, threads, load, allocationSupported ? rate : -1, cpuTotal,
+                    allocationSupported ? allocationTotal : -1);
+        }
+    }
+}
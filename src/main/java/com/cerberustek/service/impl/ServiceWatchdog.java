@@ -0,0 +1,389 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.cerberustek.service.impl;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.Destroyable;
+import com.cerberustek.service.CerberusService;
+import com.cerberustek.service.ServiceHealth;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restarts running services that have stopped working.
+ *
+ * Every poll the watchdog checks all instances of every running service
+ * except the main service. A service has failed if
+ * <ul>
+ *     <li>it reports {@link ServiceHealth#FAILED} or its health check throws,</li>
+ *     <li>one of its threads has terminated, if the service
+ *     {@link CerberusService#requiresLiveThreads() requires live threads},</li>
+ *     <li>one of its threads is deadlocked or</li>
+ *     <li>one of its threads has been blocked on a monitor for longer than the
+ *     stall timeout without using any CPU time.</li>
+ * </ul>
+ * Waiting threads are not considered stuck, since idle worker threads
+ * wait for work.
+ *
+ * A failed service is stopped, interrupting its threads, and started
+ * again. If it still fails on the next poll, the next restart is delayed
+ * twice as long as the previous one, up to the maximum backoff. The time
+ * from the failure until the service is found working again is added to
+ * its downtime.
+ *
+ * The main service only creates a watchdog if the system property
+ * {@code de.cerberus.watchdog} is set to {@code true}.
+ */
+public class ServiceWatchdog implements Destroyable {
+
+    private final CerberusRegistry registry;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final long stallNanos;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final Map<Class<? extends CerberusService>, Watch> watches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    private volatile Thread thread;
+
+    /**
+     * Creates and starts a watchdog.
+     *
+     * @param registry registry to watch
+     * @param intervalMillis time between two polls
+     * @param stallMillis time a thread may be blocked without using CPU time
+     * @param backoffMillis delay of the first retry of a failed restart
+     * @param maxBackoffMillis longest delay between two restarts
+     */
+    public ServiceWatchdog(CerberusRegistry registry, long intervalMillis, long stallMillis, long backoffMillis,
+                           long maxBackoffMillis) {
+        this.registry = registry;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(backoffMillis, maxBackoffMillis));
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "Service Watchdog");
+            t.setDaemon(true);
+            thread = t;
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates and starts a watchdog configured through the system
+     * properties {@code de.cerberus.watchdog_interval},
+     * {@code de.cerberus.watchdog_stall}, {@code de.cerberus.watchdog_backoff}
+     * and {@code de.cerberus.watchdog_max_backoff}, all in milliseconds.
+     *
+     * @param registry registry to watch
+     */
+    public ServiceWatchdog(CerberusRegistry registry) {
+        this(registry, Math.max(10, Long.getLong("de.cerberus.watchdog_interval", 1000)),
+                Long.getLong("de.cerberus.watchdog_stall", 30000),
+                Long.getLong("de.cerberus.watchdog_backoff", 1000),
+                Long.getLong("de.cerberus.watchdog_max_backoff", 60000));
+    }
+
+    /**
+     * Returns rather or not a service is working, as far as the watchdog
+     * knows. Services that have never failed are available.
+     *
+     * @param serviceClass ServiceClass
+     * @return is available?
+     */
+    public boolean isAvailable(Class<? extends CerberusService> serviceClass) {
+        Watch watch = watches.get(serviceClass);
+        return watch == null || !watch.down;
+    }
+
+    /**
+     * Returns how long a service has been unavailable in total,
+     * including a current outage.
+     *
+     * @param serviceClass ServiceClass
+     * @return downtime in milliseconds
+     */
+    public long getDowntime(Class<? extends CerberusService> serviceClass) {
+        Watch watch = watches.get(serviceClass);
+        if (watch == null)
+            return 0;
+        long downtime = watch.downtime;
+        if (watch.down)
+            downtime += System.nanoTime() - watch.downSince;
+        return TimeUnit.NANOSECONDS.toMillis(downtime);
+    }
+
+    /**
+     * Returns how often a service has failed.
+     *
+     * @param serviceClass ServiceClass
+     * @return failures
+     */
+    public int getFailures(Class<? extends CerberusService> serviceClass) {
+        Watch watch = watches.get(serviceClass);
+        return watch != null ? watch.failures : 0;
+    }
+
+    /**
+     * Returns how often the watchdog has restarted a service.
+     *
+     * @param serviceClass ServiceClass
+     * @return restarts
+     */
+    public int getRestarts(Class<? extends CerberusService> serviceClass) {
+        Watch watch = watches.get(serviceClass);
+        return watch != null ? watch.restarts : 0;
+    }
+
+    /**
+     * Returns why a service failed the last time.
+     *
+     * @param serviceClass ServiceClass
+     * @return reason or null, if the service has never failed
+     */
+    public String getFailureReason(Class<? extends CerberusService> serviceClass) {
+        Watch watch = watches.get(serviceClass);
+        return watch != null ? watch.reason : null;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            registry.warning("Service watchdog failed: " + e);
+        }
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        Set<Long> deadlocked = deadlocked();
+
+        for (CerberusService service : registry.findServices(CerberusService.class)) {
+            Class<? extends CerberusService> serviceClass = service.serviceClass();
+            if (serviceClass == MainService.class)
+                continue;
+
+            Watch watch = watches.get(serviceClass);
+            if (watch != null && watch.down) {
+                retry(serviceClass, watch, now, deadlocked);
+                continue;
+            }
+            if (!registry.isRunning(serviceClass)) {
+                if (watch != null)
+                    watch.samples.clear();
+                continue;
+            }
+
+            if (watch == null)
+                watch = watches.computeIfAbsent(serviceClass, k -> new Watch());
+            String failure = diagnose(serviceClass, watch, now, deadlocked);
+            if (failure != null) {
+                watch.downSince = now;
+                watch.down = true;
+                watch.failures++;
+                watch.reason = failure;
+                registry.warning(serviceClass.getSimpleName() + " failed: " + failure);
+                restart(serviceClass, watch, now);
+            }
+        }
+    }
+
+    private void retry(Class<? extends CerberusService> serviceClass, Watch watch, long now, Set<Long> deadlocked) {
+        if (watch.restarted) {
+            watch.restarted = false;
+            String failure = registry.isRunning(serviceClass)
+                    ? diagnose(serviceClass, watch, now, deadlocked) : "not running after restart";
+            if (failure == null) {
+                long downtime = now - watch.downSince;
+                watch.downtime += downtime;
+                watch.down = false;
+                watch.attempts = 0;
+                registry.info(serviceClass.getSimpleName() + " is available again after " +
+                        TimeUnit.NANOSECONDS.toMillis(downtime) + " ms");
+                return;
+            }
+
+            watch.reason = failure;
+            watch.nextAttempt = now + backoff(watch.attempts);
+            registry.warning(serviceClass.getSimpleName() + " still fails after restart: " + failure);
+        }
+
+        if (now - watch.nextAttempt >= 0)
+            restart(serviceClass, watch, now);
+    }
+
+    private void restart(Class<? extends CerberusService> serviceClass, Watch watch, long now) {
+        watch.attempts++;
+        watch.restarts++;
+        watch.samples.clear();
+        registry.info("Restarting " + serviceClass.getSimpleName() + " (attempt " + watch.attempts + ")");
+        try {
+            if (registry.isRunning(serviceClass))
+                registry.forceStop(serviceClass);
+            registry.requestStart(serviceClass);
+            watch.restarted = true;
+        } catch (RuntimeException e) {
+            watch.reason = "restart failed: " + e;
+            watch.nextAttempt = now + backoff(watch.attempts);
+            registry.warning("Could not restart " + serviceClass.getSimpleName() + ": " + e);
+        }
+    }
+
+    private long backoff(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        long delay = backoffNanos << shift;
+        return delay < 0 || delay > maxBackoffNanos ? maxBackoffNanos : delay;
+    }
+
+    /**
+     * Returns why a service has failed, or null if it is working.
+     */
+    private String diagnose(Class<? extends CerberusService> serviceClass, Watch watch, long now,
+                            Set<Long> deadlocked) {
+        HashMap<Thread, Sample> samples = new HashMap<>();
+        String failure = null;
+        boolean degraded = false;
+
+        for (CerberusService instance : registry.getServices(serviceClass)) {
+            ServiceHealth health;
+            try {
+                health = instance.health();
+            } catch (RuntimeException e) {
+                failure = "health check failed: " + e;
+                break;
+            }
+            if (health == ServiceHealth.FAILED) {
+                failure = "reported " + health;
+                break;
+            }
+            degraded |= health == ServiceHealth.DEGRADED;
+
+            Collection<Thread> threads = instance.getThreads();
+            failure = threads != null ? diagnose(threads, instance.requiresLiveThreads(), watch, now, deadlocked,
+                    samples) : null;
+            if (failure != null)
+                break;
+        }
+
+        watch.samples = samples;
+        if (failure == null && degraded != watch.degraded) {
+            watch.degraded = degraded;
+            if (degraded)
+                registry.warning(serviceClass.getSimpleName() + " reports " + ServiceHealth.DEGRADED);
+            else
+                registry.info(serviceClass.getSimpleName() + " reports " + ServiceHealth.HEALTHY + " again");
+        }
+        return failure;
+    }
+
+    private String diagnose(Collection<Thread> threads, boolean live, Watch watch, long now, Set<Long> deadlocked,
+                            Map<Thread, Sample> samples) {
+        for (Thread t : threads) {
+            Thread.State state = t.getState();
+            if (state == Thread.State.TERMINATED && live)
+                return "thread " + t.getName() + " has terminated";
+            if (deadlocked.contains(t.getId()))
+                return "thread " + t.getName() + " is deadlocked";
+            if (state != Thread.State.BLOCKED)
+                continue;
+
+            long cpuTime = cpuTime(t);
+            Sample sample = watch.samples.get(t);
+            if (sample == null || sample.cpuTime != cpuTime)
+                sample = new Sample(cpuTime, now);
+            samples.put(t, sample);
+            if (now - sample.since >= stallNanos)
+                return "thread " + t.getName() + " has been blocked for " +
+                        TimeUnit.NANOSECONDS.toMillis(now - sample.since) + " ms";
+        }
+        return null;
+    }
+
+    private long cpuTime(Thread t) {
+        try {
+            return threadBean.isThreadCpuTimeSupported() ? threadBean.getThreadCpuTime(t.getId()) : -1;
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    private Set<Long> deadlocked() {
+        long[] ids = threadBean.findDeadlockedThreads();
+        if (ids == null)
+            return Collections.emptySet();
+        HashSet<Long> set = new HashSet<>(ids.length * 2);
+        for (long id : ids)
+            set.add(id);
+        return set;
+    }
+
+    /** State of a service, written by the watchdog thread only */
+    private static final class Watch {
+
+        private volatile boolean down;
+        private volatile long downSince;
+        private volatile long downtime;
+        private volatile int failures;
+        private volatile int restarts;
+        private volatile String reason;
+        private int attempts;
+        private long nextAttempt;
+        private boolean restarted;
+        private boolean degraded;
+        private Map<Thread, Sample> samples = new HashMap<>();
+    }
+
+    /** CPU time of a blocked thread and since when it has not changed */
+    private static final class Sample {
+
+        private final long cpuTime;
+        private final long since;
+
+        private Sample(long cpuTime, long since) {
+            this.cpuTime = cpuTime;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.command;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.service.impl.MainService;
+import com.cerberustek.service.impl.terminal.LoggingCommandOutput;
+import com.cerberustek.service.impl.terminal.TerminalScript;
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.TerminalCommand;
+import com.cerberustek.usr.PermissionHolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * Executes a script of terminal commands, see {@link TerminalScript}.
+ *
+ * The script is read from a file, or with {@value #STDIN} from the
+ * terminal input up to a line {@value #END} or the end of the input,
+ * which allows piping scripts into the terminal. Scripts cannot run
+ * batch commands themselves.
+ */
+public class BatchCommand implements TerminalCommand {
+
+    /** Argument reading the script from the terminal input */
+    public static final String STDIN = "-";
+    /** Line ending a script read from the terminal input */
+    public static final String END = "end";
+
+    @Override
+    public boolean execute(PermissionHolder holder, Scanner scanner, String... args) {
+        return execute(holder, LoggingCommandOutput.getInstance(), scanner, args);
+    }
+
+    @Override
+    public boolean execute(PermissionHolder holder, CommandOutput output, Scanner scanner, String... args) {
+        boolean parallel = false;
+        boolean stopOnError = true;
+        boolean timing = false;
+        String source = null;
+
+        for (String arg : args) {
+            switch (arg) {
+                case "--parallel":
+                    parallel = true;
+                    break;
+                case "--continue":
+                    stopOnError = false;
+                    break;
+                case "--timing":
+                    timing = true;
+                    break;
+                default:
+                    if (source != null || arg.startsWith("--"))
+                        return false;
+                    source = arg;
+                    break;
+            }
+        }
+        if (source == null)
+            return false;
+
+        TerminalScript script;
+        try {
+            List<String> lines = source.equals(STDIN) ? readInput(scanner)
+                    : Files.readAllLines(Paths.get(source), StandardCharsets.UTF_8);
+            script = TerminalScript.parse(CerberusRegistry.getInstance().getTerminalExecutor(), holder, lines);
+        } catch (IOException e) {
+            output.warning("Could not read script " + source + ": " + e);
+            return true;
+        } catch (IllegalArgumentException e) {
+            output.warning(e.getMessage());
+            return true;
+        }
+        if (script.contains(this)) {
+            output.warning("Scripts cannot run the command \"" + executor() + "\"!");
+            return true;
+        }
+
+        try {
+            script.execute(holder, output, scanner, parallel, stopOnError, timing);
+        } catch (InterruptedException e) {
+            output.warning("Script " + source + " has been cancelled!");
+        }
+        return true;
+    }
+
+    private List<String> readInput(Scanner scanner) {
+        ArrayList<String> lines = new ArrayList<>();
+        try {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                if (line.trim().equals(END))
+                    break;
+                lines.add(line);
+            }
+        } catch (IllegalStateException | NoSuchElementException e) {
+            // The input has been closed, run what has been read so far
+        }
+        return lines;
+    }
+
+    @Override
+    public String executor() {
+        return "batch";
+    }
+
+    @Override
+    public String usage() {
+        return "batch [--parallel] [--continue] [--timing] <file, ->";
+    }
+
+    @Override
+    public String requiredPermission() {
+        return MainService.PERMISSION_BATCH;
+    }
+}
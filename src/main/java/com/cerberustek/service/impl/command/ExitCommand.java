@@ -23,8 +23,9 @@
 
 package com.cerberustek.service.impl.command;
 
+import com.cerberustek.service.impl.terminal.LoggingCommandOutput;
+import com.cerberustek.service.terminal.CommandOutput;
 import com.cerberustek.service.terminal.TerminalCommand;
-import com.cerberustek.CerberusRegistry;
 import com.cerberustek.service.impl.MainService;
 import com.cerberustek.usr.PermissionHolder;
 
@@ -34,8 +35,12 @@ public class ExitCommand implements TerminalCommand {
 
     @Override
     public boolean execute(PermissionHolder holder, Scanner scanner, String... args) {
-        CerberusRegistry registry = CerberusRegistry.getInstance();
-        registry.warning("The exit command does not work. Try \"service stop\" instead.");
+        return execute(holder, LoggingCommandOutput.getInstance(), scanner, args);
+    }
+
+    @Override
+    public boolean execute(PermissionHolder holder, CommandOutput output, Scanner scanner, String... args) {
+        output.warning("The exit command does not work. Try \"service stop\" instead.");
         return true;
     }
 
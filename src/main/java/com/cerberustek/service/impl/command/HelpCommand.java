@@ -23,6 +23,9 @@
 
 package com.cerberustek.service.impl.command;
 
+import com.cerberustek.service.impl.terminal.LoggingCommandOutput;
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.OutputRecord;
 import com.cerberustek.service.terminal.TerminalCommand;
 import com.cerberustek.service.terminal.TerminalExecutor;
 import com.cerberustek.CerberusRegistry;
@@ -30,44 +33,83 @@ import com.cerberustek.service.TerminalUtil;
 import com.cerberustek.service.impl.MainService;
 import com.cerberustek.usr.PermissionHolder;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class HelpCommand implements TerminalCommand {
 
+    private static final int PAGE_SIZE = 10;
+
+    /** Help index of the last executor, rebuilt when its commands change */
+    private volatile HelpIndex index;
+
     @Override
     public boolean execute(PermissionHolder holder, Scanner scanner, String... args) {
-        int page = 0;
+        return execute(holder, LoggingCommandOutput.getInstance(), scanner, args);
+    }
+
+    @Override
+    public boolean execute(PermissionHolder holder, CommandOutput output, Scanner scanner, String... args) {
+        if (args.length > 1)
+            return false;
+
+        int page = 1;
+        String keyword = null;
         if (args.length > 0) {
             try {
-                page = Integer.parseInt(args[0]);
+                page = Math.max(1, Integer.parseInt(args[0]));
             } catch (NumberFormatException e) {
-                return false;
+                keyword = args[0].toLowerCase(Locale.ROOT);
             }
         }
 
-        CerberusRegistry logger = CerberusRegistry.getInstance();
-        TerminalExecutor executor = logger.getTerminal().getExecutor();
-        Collection<TerminalCommand> commands = executor.commands();
-        Iterator<TerminalCommand> tr = commands.iterator();
-
-        for (int i = 0; i < page * 10; i++) {
-            if (tr.hasNext())
-                tr.next();
+        TerminalCommand[] commands = index(CerberusRegistry.getInstance().getTerminalExecutor())
+                .visibleTo(holder, keyword);
+        if (keyword != null) {
+            output.info(TerminalUtil.ANSI_YELLOW + "Commands matching \"" + args[0] + "\":" +
+                    TerminalUtil.ANSI_RESET);
+            for (TerminalCommand command : commands)
+                printCommand(output, command);
+            return true;
         }
-        logger.info(TerminalUtil.ANSI_YELLOW + "Here is a list of all commands:" + TerminalUtil.ANSI_RESET);
-        while (tr.hasNext())
-            logger.info(TerminalUtil.ANSI_CYAN + "\t# " + TerminalUtil.ANSI_RESET + tr.next().usage());
 
-        int maxPages = (int) Math.ceil((float) commands.size() / 10f);
-        logger.info(TerminalUtil.ANSI_YELLOW + "Page " + (page + 1) + "/" +
+        int maxPages = Math.max(1, (commands.length + PAGE_SIZE - 1) / PAGE_SIZE);
+        page = Math.min(page, maxPages);
+        output.info(TerminalUtil.ANSI_YELLOW + "Here is a list of all commands:" + TerminalUtil.ANSI_RESET);
+        for (int i = (page - 1) * PAGE_SIZE; i < Math.min(commands.length, page * PAGE_SIZE); i++)
+            printCommand(output, commands[i]);
+
+        output.info(TerminalUtil.ANSI_YELLOW + "Page " + page + "/" +
                 maxPages + "." + (maxPages > page ? " Try " +
                     TerminalUtil.ANSI_BLUE + "'help " + (page + 1) + TerminalUtil.ANSI_YELLOW + "' for" +
                 " more." : "") + TerminalUtil.ANSI_RESET);
         return true;
     }
 
+    private void printCommand(CommandOutput output, TerminalCommand command) {
+        output.record(OutputRecord.of("command")
+                .with("command", command.executor())
+                .with("usage", command.usage())
+                .text(TerminalUtil.ANSI_CYAN + "\t# " + TerminalUtil.ANSI_RESET + command.usage()));
+    }
+
+    private HelpIndex index(TerminalExecutor executor) {
+        HelpIndex current = index;
+        long version = executor.version();
+        if (current == null || current.executor != executor || current.version != version ||
+                version == TerminalExecutor.UNVERSIONED) {
+            current = new HelpIndex(executor, version, executor.commands());
+            index = current;
+        }
+        return current;
+    }
+
     @Override
     public String executor() {
         return "help";
@@ -75,11 +117,89 @@ public class HelpCommand implements TerminalCommand {
 
     @Override
     public String usage() {
-        return "help <page>";
+        return "help <page, keyword>";
     }
 
     @Override
     public String requiredPermission() {
         return MainService.PERMISSION_HELP;
     }
+
+    /**
+     * Commands of an executor, sorted by their executor, together with
+     * their lower case usage for keyword searches.
+     *
+     * The commands visible to a holder only depend on which of the
+     * distinct required permissions it has, so the visible commands are
+     * cached per set of granted permissions and a page is a slice of
+     * that cached array.
+     */
+    private static class HelpIndex {
+
+        /** Maximum amount of cached permission sets */
+        private static final int MAX_VISIBLE = 64;
+
+        private final TerminalExecutor executor;
+        private final long version;
+        private final TerminalCommand[] commands;
+        private final String[] usages;
+        /** Distinct permissions required by the commands */
+        private final String[] permissions;
+        /** Index into {@code permissions} of the permission each command requires */
+        private final int[] required;
+        private final ConcurrentHashMap<BitSet, TerminalCommand[]> visible = new ConcurrentHashMap<>();
+
+        private HelpIndex(TerminalExecutor executor, long version, Collection<TerminalCommand> commands) {
+            this.executor = executor;
+            this.version = version;
+            this.commands = commands.toArray(new TerminalCommand[0]);
+            Arrays.sort(this.commands, (a, b) -> a.executor().compareTo(b.executor()));
+
+            usages = new String[this.commands.length];
+            required = new int[this.commands.length];
+            HashMap<String, Integer> distinct = new HashMap<>();
+            for (int i = 0; i < usages.length; i++) {
+                usages[i] = this.commands[i].usage().toLowerCase(Locale.ROOT);
+                required[i] = distinct.computeIfAbsent(this.commands[i].requiredPermission(), k -> distinct.size());
+            }
+            permissions = new String[distinct.size()];
+            for (Map.Entry<String, Integer> entry : distinct.entrySet())
+                permissions[entry.getValue()] = entry.getKey();
+        }
+
+        /**
+         * Returns the commands that the holder is allowed to execute,
+         * optionally limited to those whose usage contains a keyword.
+         */
+        private TerminalCommand[] visibleTo(PermissionHolder holder, String keyword) {
+            BitSet granted = new BitSet(permissions.length);
+            for (int i = 0; i < permissions.length; i++) {
+                if (holder.hasPermission(permissions[i]))
+                    granted.set(i);
+            }
+            if (keyword != null)
+                return filter(granted, keyword);
+
+            TerminalCommand[] cached = visible.get(granted);
+            if (cached == null) {
+                cached = filter(granted, null);
+                if (visible.size() >= MAX_VISIBLE)
+                    visible.clear();
+                visible.put(granted, cached);
+            }
+            return cached;
+        }
+
+        private TerminalCommand[] filter(BitSet granted, String keyword) {
+            TerminalCommand[] out = new TerminalCommand[commands.length];
+            int count = 0;
+            for (int i = 0; i < commands.length; i++) {
+                if (keyword != null && !usages[i].contains(keyword))
+                    continue;
+                if (granted.get(required[i]))
+                    out[count++] = commands[i];
+            }
+            return count == out.length ? out : Arrays.copyOf(out, count);
+        }
+    }
 }
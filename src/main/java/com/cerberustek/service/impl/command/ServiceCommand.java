@@ -23,21 +23,37 @@
 
 package com.cerberustek.service.impl.command;
 
+import com.cerberustek.service.impl.terminal.LoggingCommandOutput;
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.OutputRecord;
 import com.cerberustek.service.terminal.TerminalCommand;
 import com.cerberustek.CerberusRegistry;
 import com.cerberustek.service.CerberusService;
+import com.cerberustek.service.AmbiguousServiceException;
 import com.cerberustek.service.ServiceNotFoundException;
 import com.cerberustek.service.TerminalUtil;
 import com.cerberustek.service.impl.MainService;
+import com.cerberustek.service.impl.ServiceWatchdog;
 import com.cerberustek.usr.PermissionHolder;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 
 public class ServiceCommand implements TerminalCommand {
 
+    private static final List<String> SUB_COMMANDS = List.of("start", "stop", "time", "status", "list");
+
     @Override
     public boolean execute(PermissionHolder holder, Scanner scanner, String... args) {
+        return execute(holder, LoggingCommandOutput.getInstance(), scanner, args);
+    }
+
+    @Override
+    public boolean execute(PermissionHolder holder, CommandOutput output, Scanner scanner, String... args) {
+        CerberusRegistry registry = CerberusRegistry.getInstance();
         if (args.length > 0) {
 
             if (args.length > 1) {
@@ -46,12 +62,15 @@ public class ServiceCommand implements TerminalCommand {
 
                 CerberusService service;
                 try {
-                    service = CerberusRegistry.getInstance().getService(args[1]);
+                    service = registry.getService(args[1]);
+                } catch (AmbiguousServiceException e) {
+                    output.warning(e.getMessage());
+                    return true;
                 } catch (ServiceNotFoundException e) {
-                    CerberusRegistry.getInstance().warning("No class with name: " + args[1] + " in classpath!");
+                    output.warning("No class with name: " + args[1] + " in classpath!");
                     return true;
                 } catch (ClassCastException e) {
-                    CerberusRegistry.getInstance().warning("Class " + args[1] + " does not" +
+                    output.warning("Class " + args[1] + " does not" +
                             "implement CerberusService and is therefor not a valid service!");
                     return true;
                 }
@@ -59,46 +78,59 @@ public class ServiceCommand implements TerminalCommand {
                 switch (args[0].toLowerCase()) {
                     case "start":
                         if (!holder.hasPermission(MainService.PERMISSION_START)) {
-                            CerberusRegistry.getInstance().printNoPermission();
+                            output.warning(CerberusRegistry.ACCESS_DENIED);
                             break;
                         }
 
-                        CerberusRegistry.getInstance().requestStart(service.serviceClass());
-                        CerberusRegistry.getInstance().info("Service is now started!");
+                        registry.requestStart(service.serviceClass());
+                        output.info("Service is now started!");
                         break;
                     case "stop":
                         if (!holder.hasPermission(MainService.PERMISSION_STOP)) {
-                            CerberusRegistry.getInstance().printNoPermission();
+                            output.warning(CerberusRegistry.ACCESS_DENIED);
                             break;
                         }
 
-                        CerberusRegistry.getInstance().requestStop(service.serviceClass());
-                        CerberusRegistry.getInstance().info("Service is now stopped!");
+                        registry.requestStop(service.serviceClass());
+                        output.info("Service is now stopped!");
                         break;
                     case "time":
                         if (!holder.hasPermission(MainService.PERMISSION_TIME)) {
-                            CerberusRegistry.getInstance().printNoPermission();
+                            output.warning(CerberusRegistry.ACCESS_DENIED);
                             break;
                         }
 
-                        CerberusRegistry.getInstance().info("Service has been online since: " +
-                                TerminalUtil.getInstance().formatTime(CerberusRegistry.
-                                        getInstance().getOnlineTime(service.serviceClass())));
+                        long onlineTime = registry.getOnlineTime(service.serviceClass());
+                        output.record(OutputRecord.of("service")
+                                .with("service", service.serviceClass().getName())
+                                .with("online_since", onlineTime)
+                                .text("Service has been online since: " +
+                                        TerminalUtil.getInstance().formatTime(onlineTime)));
                         break;
                     case "status":
                         if (!holder.hasPermission(MainService.PERMISSION_STATUS)) {
-                            CerberusRegistry.getInstance().printNoPermission();
+                            output.warning(CerberusRegistry.ACCESS_DENIED);
                             break;
                         }
 
-                        CerberusRegistry.getInstance().info("Service status is: " +
-                                (CerberusRegistry.getInstance().isRunning(service.serviceClass())
-                                        ? TerminalUtil.ANSI_GREEN + "ACTIVE" :
-                                        TerminalUtil.ANSI_RED + "INACTIVE") + TerminalUtil.ANSI_RESET + "!");
+                        String status = getStatus(registry, service);
+                        OutputRecord record = OutputRecord.of("service")
+                                .with("service", service.serviceClass().getName())
+                                .with("status", status)
+                                .text("Service status is: " + colored(status) + "!");
+                        ServiceWatchdog watchdog = getWatchdog(registry);
+                        if (watchdog != null) {
+                            record.with("failures", watchdog.getFailures(service.serviceClass()))
+                                    .with("restarts", watchdog.getRestarts(service.serviceClass()))
+                                    .with("downtime", watchdog.getDowntime(service.serviceClass()));
+                            String reason = watchdog.getFailureReason(service.serviceClass());
+                            if (reason != null)
+                                record.with("reason", reason);
+                        }
+                        output.record(record);
                         break;
                     default:
-                        CerberusRegistry.getInstance().warning("Could not find sub-command: " +
-                                    args[0] + "!");
+                        output.warning("Could not find sub-command: " + args[0] + "!");
                         break;
                 }
                 return true;
@@ -107,51 +139,55 @@ public class ServiceCommand implements TerminalCommand {
             switch (args[0].toLowerCase()) {
                 case "stop":
                     if (!holder.hasPermission(MainService.PERMISSION_STOP)) {
-                        CerberusRegistry.getInstance().printNoPermission();
+                        output.warning(CerberusRegistry.ACCESS_DENIED);
                         break;
                     }
 
-                    CerberusRegistry.getInstance().info("Stopping all services");
-                    CerberusRegistry.getInstance().requestStop();
+                    output.info("Stopping all services");
+                    registry.requestStop();
                     break;
                 case "start":
                     if (!holder.hasPermission(MainService.PERMISSION_START)) {
-                        CerberusRegistry.getInstance().printNoPermission();
+                        output.warning(CerberusRegistry.ACCESS_DENIED);
                         break;
                     }
 
-                    CerberusRegistry.getInstance().info("Starting all services");
-                    CerberusRegistry.getInstance().requestStart();
+                    output.info("Starting all services");
+                    registry.requestStart();
                     break;
                 case "list":
                     if (!holder.hasPermission(MainService.PERMISSION_LIST)) {
-                        CerberusRegistry.getInstance().printNoPermission();
+                        output.warning(CerberusRegistry.ACCESS_DENIED);
                         break;
                     }
 
-                    StringBuilder builder = new StringBuilder();
-                    Collection<CerberusService> services = CerberusRegistry.getInstance().services();
-                    CerberusRegistry.getInstance().info(TerminalUtil.ANSI_YELLOW + "Here is a list of all registered" +
+                    output.info(TerminalUtil.ANSI_YELLOW + "Here is a list of all registered" +
                             " services:" + TerminalUtil.ANSI_RESET);
-                    for (CerberusService service : services) {
+                    StringBuilder builder = new StringBuilder();
+                    for (CerberusService service : registry.services()) {
+                        boolean running = registry.isRunning(service.serviceClass());
+                        String status = getStatus(registry, service);
+                        int threads = getThreadSize(service);
+
+                        builder.setLength(0);
                         builder.append(TerminalUtil.ANSI_CYAN).append("\t# ").append(TerminalUtil.ANSI_RESET)
                                 .append(service.serviceClass()).append(TerminalUtil.ANSI_CYAN).append(" --> ")
-                                .append(TerminalUtil.ANSI_RESET);
-                        if (CerberusRegistry.getInstance().isRunning(service.serviceClass()))
-                            builder.append(TerminalUtil.ANSI_GREEN).append("ACTIVE").append(TerminalUtil.ANSI_RESET)
-                                    .append(" on ").append(TerminalUtil.ANSI_GREEN).append(getThreadSize(service))
+                                .append(TerminalUtil.ANSI_RESET).append(colored(status));
+                        if (running)
+                            builder.append(" on ").append(TerminalUtil.ANSI_GREEN).append(threads)
                                     .append(TerminalUtil.ANSI_RESET).append(" threads");
-                        else
-                            builder.append(TerminalUtil.ANSI_RED).append("INACTIVE").append(TerminalUtil.ANSI_RESET);
-                        CerberusRegistry.getInstance().info(builder.toString());
-                        builder = new StringBuilder();
+
+                        output.record(OutputRecord.of("service")
+                                .with("service", service.serviceClass().getName())
+                                .with("status", status)
+                                .with("threads", running ? threads : 0)
+                                .text(builder.toString()));
                     }
-                    CerberusRegistry.getInstance().info(TerminalUtil.ANSI_YELLOW +
+                    output.info(TerminalUtil.ANSI_YELLOW +
                             "------------------------------------------" + TerminalUtil.ANSI_RESET);
                     break;
                 default:
-                    CerberusRegistry.getInstance().warning("Could not find sub-command: " +
-                            args[0] + "!");
+                    output.warning("Could not find sub-command: " + args[0] + "!");
                     break;
             }
             return true;
@@ -159,6 +195,23 @@ public class ServiceCommand implements TerminalCommand {
         return false;
     }
 
+    private String getStatus(CerberusRegistry registry, CerberusService service) {
+        if (!registry.isRunning(service.serviceClass()))
+            return "INACTIVE";
+        ServiceWatchdog watchdog = getWatchdog(registry);
+        return watchdog == null || watchdog.isAvailable(service.serviceClass()) ? "ACTIVE" : "FAILED";
+    }
+
+    private String colored(String status) {
+        String color = status.equals("ACTIVE") ? TerminalUtil.ANSI_GREEN
+                : status.equals("FAILED") ? TerminalUtil.ANSI_YELLOW : TerminalUtil.ANSI_RED;
+        return color + status + TerminalUtil.ANSI_RESET;
+    }
+
+    private ServiceWatchdog getWatchdog(CerberusRegistry registry) {
+        return registry.getService(MainService.class).getWatchdog();
+    }
+
     private int getThreadSize(CerberusService service) {
         if (service == null)
             return 0;
@@ -167,6 +220,27 @@ public class ServiceCommand implements TerminalCommand {
         return service.getThreads().size();
     }
 
+    @Override
+    public Collection<String> subCommands() {
+        return SUB_COMMANDS;
+    }
+
+    @Override
+    public Collection<String> complete(int index, String prefix) {
+        ArrayList<String> names = new ArrayList<>();
+        if (index != 1)
+            return names;
+
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        for (CerberusService service : CerberusRegistry.getInstance().services()) {
+            String name = service.serviceClass().getSimpleName();
+            if (name.toLowerCase(Locale.ROOT).startsWith(lowerPrefix))
+                names.add(name);
+        }
+        names.sort(null);
+        return names;
+    }
+
     @Override
     public String executor() {
         return "service";
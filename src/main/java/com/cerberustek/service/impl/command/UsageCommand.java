@@ -0,0 +1,159 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.cerberustek.service.impl.command;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.service.AmbiguousServiceException;
+import com.cerberustek.service.CerberusService;
+import com.cerberustek.service.ServiceNotFoundException;
+import com.cerberustek.service.ServiceUsage;
+import com.cerberustek.service.TerminalUtil;
+import com.cerberustek.service.impl.MainService;
+import com.cerberustek.service.impl.ServiceUsageSampler;
+import com.cerberustek.service.impl.terminal.LoggingCommandOutput;
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.OutputRecord;
+import com.cerberustek.service.terminal.TerminalCommand;
+import com.cerberustek.usr.PermissionHolder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
+
+/**
+ * Lists the CPU load, allocation rate and threads of the running
+ * services, the most CPU consuming service first.
+ */
+public class UsageCommand implements TerminalCommand {
+
+    @Override
+    public boolean execute(PermissionHolder holder, Scanner scanner, String... args) {
+        return execute(holder, LoggingCommandOutput.getInstance(), scanner, args);
+    }
+
+    @Override
+    public boolean execute(PermissionHolder holder, CommandOutput output, Scanner scanner, String... args) {
+        if (args.length > 1)
+            return false;
+
+        CerberusRegistry registry = CerberusRegistry.getInstance();
+        ServiceUsageSampler sampler = registry.getService(MainService.class).getUsageSampler();
+        if (sampler == null) {
+            output.warning("Usage sampling is disabled!");
+            return true;
+        }
+
+        List<ServiceUsage> usages = sampler.getUsages();
+        if (args.length > 0) {
+            CerberusService service;
+            try {
+                service = registry.getService(args[0]);
+            } catch (AmbiguousServiceException e) {
+                output.warning(e.getMessage());
+                return true;
+            } catch (ServiceNotFoundException e) {
+                output.warning("No service with name: " + args[0] + "!");
+                return true;
+            }
+
+            ServiceUsage usage = sampler.getUsage(service.serviceClass());
+            if (usage == null) {
+                output.warning("Service " + service.serviceClass().getSimpleName() + " has not been sampled yet!");
+                return true;
+            }
+            usages = List.of(usage);
+        }
+
+        output.info(TerminalUtil.ANSI_YELLOW + "Resource usage of the running services:" + TerminalUtil.ANSI_RESET);
+        for (ServiceUsage usage : usages)
+            printUsage(output, usage);
+        output.info(TerminalUtil.ANSI_YELLOW +
+                "------------------------------------------" + TerminalUtil.ANSI_RESET);
+        return true;
+    }
+
+    private void printUsage(CommandOutput output, ServiceUsage usage) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(TerminalUtil.ANSI_CYAN).append("\t# ").append(TerminalUtil.ANSI_RESET)
+                .append(usage.serviceClass().getSimpleName()).append(TerminalUtil.ANSI_CYAN).append(" --> ")
+                .append(TerminalUtil.ANSI_RESET).append(usage.getCpuLoad() >= 0.5 ? TerminalUtil.ANSI_RED
+                        : TerminalUtil.ANSI_GREEN)
+                .append(String.format(Locale.ROOT, "%.1f%%", usage.getCpuLoad() * 100))
+                .append(TerminalUtil.ANSI_RESET).append(" CPU");
+        if (usage.getAllocationRate() >= 0)
+            builder.append(", ").append(formatBytes(usage.getAllocationRate())).append("/s allocated");
+        builder.append(" on ").append(usage.getThreads()).append(" threads");
+
+        output.record(OutputRecord.of("usage")
+                .with("service", usage.serviceClass().getName())
+                .with("threads", usage.getThreads())
+                .with("cpu_load", usage.getCpuLoad())
+                .with("allocation_rate", usage.getAllocationRate())
+                .with("cpu_time", usage.getCpuTime())
+                .with("allocated_bytes", usage.getAllocatedBytes())
+                .text(builder.toString()));
+    }
+
+    private static String formatBytes(double bytes) {
+        if (bytes < 1024)
+            return String.format(Locale.ROOT, "%.0f B", bytes);
+        if (bytes < 1024 * 1024)
+            return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024);
+        if (bytes < 1024 * 1024 * 1024)
+            return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024 * 1024));
+        return String.format(Locale.ROOT, "%.1f GiB", bytes / (1024 * 1024 * 1024));
+    }
+
+    @Override
+    public Collection<String> complete(int index, String prefix) {
+        ArrayList<String> names = new ArrayList<>();
+        if (index != 0)
+            return names;
+
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        for (CerberusService service : CerberusRegistry.getInstance().services()) {
+            String name = service.serviceClass().getSimpleName();
+            if (name.toLowerCase(Locale.ROOT).startsWith(lowerPrefix))
+                names.add(name);
+        }
+        names.sort(null);
+        return names;
+    }
+
+    @Override
+    public String executor() {
+        return "usage";
+    }
+
+    @Override
+    public String usage() {
+        return "usage <service>";
+    }
+
+    @Override
+    public String requiredPermission() {
+        return MainService.PERMISSION_USAGE;
+    }
+}
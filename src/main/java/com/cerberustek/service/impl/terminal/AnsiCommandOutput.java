@@ -0,0 +1,72 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.terminal;
+
+import com.cerberustek.service.TerminalUtil;
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.OutputRecord;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Renders command results as coloured text for operators.
+ */
+public class AnsiCommandOutput implements CommandOutput {
+
+    private final Consumer<String> sink;
+
+    /**
+     * Creates a text output.
+     *
+     * @param sink receives the rendered lines
+     */
+    public AnsiCommandOutput(Consumer<String> sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void info(String message) {
+        sink.accept(message);
+    }
+
+    @Override
+    public void warning(String message) {
+        sink.accept(TerminalUtil.ANSI_YELLOW + message + TerminalUtil.ANSI_RESET);
+    }
+
+    @Override
+    public void record(OutputRecord record) {
+        if (record.getText() != null) {
+            sink.accept(record.getText());
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(TerminalUtil.ANSI_CYAN).append(record.getType()).append(TerminalUtil.ANSI_RESET);
+        for (Map.Entry<String, Object> field : record.getFields().entrySet())
+            builder.append(' ').append(field.getKey()).append('=').append(field.getValue());
+        sink.accept(builder.toString());
+    }
+}
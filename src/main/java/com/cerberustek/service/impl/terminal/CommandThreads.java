@@ -0,0 +1,86 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.terminal;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates and keeps track of the threads executing the commands of a
+ * terminal.
+ *
+ * Code running on one of these threads can look up the factory that
+ * created it, so threads started by a command on behalf of the terminal,
+ * such as those of a parallel script, belong to the same terminal.
+ */
+final class CommandThreads implements ThreadFactory {
+
+    private static final ThreadLocal<CommandThreads> CURRENT = new ThreadLocal<>();
+
+    private final String prefix;
+    /** Currently alive threads */
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger count = new AtomicInteger();
+
+    CommandThreads(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(() -> {
+            CURRENT.set(this);
+            try {
+                runnable.run();
+            } finally {
+                threads.remove(Thread.currentThread());
+            }
+        }, prefix + count.incrementAndGet());
+        // Register the thread before it is started, so that the registry
+        // can attribute its first logs to the main service
+        threads.add(thread);
+        return thread;
+    }
+
+    /**
+     * Returns the currently alive threads.
+     *
+     * @return live view of the threads
+     */
+    Collection<Thread> threads() {
+        return threads;
+    }
+
+    /**
+     * Returns the factory that created the calling thread.
+     *
+     * @return factory, or null if the calling thread is no command thread
+     */
+    static CommandThreads current() {
+        return CURRENT.get();
+    }
+}
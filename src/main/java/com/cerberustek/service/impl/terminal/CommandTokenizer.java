@@ -0,0 +1,216 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.terminal;
+
+import java.util.Arrays;
+
+/**
+ * Reusable tokenizer for terminal command lines.
+ *
+ * Tokens are separated by spaces and tabs. Single quotes keep their
+ * content literally, double quotes keep their content except for
+ * backslash escapes, and outside of quotes a backslash escapes any
+ * following character. The unescaped content of all tokens is written
+ * into one internal buffer, which is reused for every line, and the
+ * tokens are exposed as {@link CharSequence} views over that buffer.
+ *
+ * A tokenizer is not thread-safe, and the views returned by
+ * {@link #token(int)} are only valid until the next line is tokenized.
+ */
+public class CommandTokenizer {
+
+    private char[] buffer = new char[128];
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private TokenView[] views = new TokenView[0];
+    private int count;
+
+    /**
+     * Splits a line into tokens, replacing the tokens of the previous
+     * line.
+     *
+     * @param line command line
+     * @return the amount of tokens
+     */
+    public int tokenize(CharSequence line) {
+        if (buffer.length < line.length())
+            buffer = new char[Math.max(line.length(), buffer.length * 2)];
+        count = 0;
+
+        int length = 0;
+        int start = 0;
+        boolean inToken = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'')
+                    quote = 0;
+                else
+                    buffer[length++] = c;
+                continue;
+            }
+
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(i + 1);
+                if (quote == 0 || next == '"' || next == '\\') {
+                    if (!inToken) {
+                        inToken = true;
+                        start = length;
+                    }
+                    buffer[length++] = next;
+                    i++;
+                    continue;
+                }
+            }
+
+            if (quote == '"') {
+                if (c == '"')
+                    quote = 0;
+                else
+                    buffer[length++] = c;
+            } else if (c == ' ' || c == '\t') {
+                if (inToken) {
+                    addToken(start, length);
+                    inToken = false;
+                }
+            } else {
+                if (!inToken) {
+                    inToken = true;
+                    start = length;
+                }
+                if (c == '"' || c == '\'')
+                    quote = c;
+                else
+                    buffer[length++] = c;
+            }
+        }
+        if (inToken)
+            addToken(start, length);
+        return count;
+    }
+
+    /**
+     * Returns the amount of tokens of the last line.
+     *
+     * @return amount of tokens
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns a view of a token of the last line. The view is reused
+     * for every line and must not be kept.
+     *
+     * @param index index of the token
+     * @return token view
+     */
+    public CharSequence token(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Token " + index + " of " + count);
+        return views[index];
+    }
+
+    /**
+     * Removes the last token of the line, in case it equals the
+     * specified flag.
+     *
+     * @param flag flag to remove
+     * @return true if the flag has been removed
+     */
+    public boolean removeTrailing(String flag) {
+        if (count < 2 || ends[count - 1] - starts[count - 1] != flag.length())
+            return false;
+        for (int i = 0; i < flag.length(); i++) {
+            if (buffer[starts[count - 1] + i] != flag.charAt(i))
+                return false;
+        }
+        count--;
+        return true;
+    }
+
+    /**
+     * Copies the tokens starting at {@code from} into a new string
+     * array.
+     *
+     * @param from index of the first token to copy
+     * @return tokens as strings
+     */
+    public String[] toArray(int from) {
+        String[] out = new String[Math.max(0, count - from)];
+        for (int i = 0; i < out.length; i++)
+            out[i] = new String(buffer, starts[from + i], ends[from + i] - starts[from + i]);
+        return out;
+    }
+
+    private void addToken(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        if (count == views.length) {
+            views = Arrays.copyOf(views, starts.length);
+            for (int i = count; i < views.length; i++)
+                views[i] = new TokenView(i);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * View of a single token inside of the tokenizer buffer.
+     */
+    private class TokenView implements CharSequence {
+
+        private final int index;
+
+        private TokenView(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return ends[index] - starts[index];
+        }
+
+        @Override
+        public char charAt(int i) {
+            if (i < 0 || i >= length())
+                throw new IndexOutOfBoundsException("Index " + i + " of " + length());
+            return buffer[starts[index] + i];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, starts[index], length());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.terminal;
+
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.OutputRecord;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Renders command results as compact JSON objects, one per line.
+ *
+ * Records are written with their type in the field {@code type},
+ * followed by their own fields. Messages are written as records of
+ * the type {@code info} or {@code warning} with a single field
+ * {@code message}. ANSI colour codes are stripped from all strings.
+ *
+ * Commands are executed with this output when their command line ends
+ * with {@link #FLAG}.
+ */
+public class JsonCommandOutput implements CommandOutput {
+
+    /** Trailing argument selecting the JSON output for a command */
+    public static final String FLAG = "--json";
+
+    private final Consumer<String> sink;
+    private final StringBuilder builder = new StringBuilder(128);
+
+    /**
+     * Creates a JSON lines output.
+     *
+     * @param sink receives the rendered lines
+     */
+    public JsonCommandOutput(Consumer<String> sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void info(String message) {
+        message("info", message);
+    }
+
+    @Override
+    public void warning(String message) {
+        message("warning", message);
+    }
+
+    @Override
+    public synchronized void record(OutputRecord record) {
+        builder.setLength(0);
+        builder.append("{\"type\":");
+        appendString(record.getType());
+        for (Map.Entry<String, Object> field : record.getFields().entrySet()) {
+            builder.append(',');
+            appendString(field.getKey());
+            builder.append(':');
+            appendValue(field.getValue());
+        }
+        builder.append('}');
+        sink.accept(builder.toString());
+    }
+
+    private synchronized void message(String type, String message) {
+        builder.setLength(0);
+        builder.append("{\"type\":");
+        appendString(type);
+        builder.append(",\"message\":");
+        appendString(message);
+        builder.append('}');
+        sink.accept(builder.toString());
+    }
+
+    private void appendValue(Object value) {
+        if (value == null)
+            builder.append("null");
+        else if (value instanceof Boolean || value instanceof Integer || value instanceof Long ||
+                value instanceof Short || value instanceof Byte)
+            builder.append(value);
+        else if (value instanceof Number && Double.isFinite(((Number) value).doubleValue()))
+            builder.append(value);
+        else
+            appendString(value.toString());
+    }
+
+    private void appendString(String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\u001B':
+                    // Skip ANSI escape sequences up to their final letter
+                    while (i + 1 < value.length() && !Character.isLetter(value.charAt(i + 1)))
+                        i++;
+                    i++;
+                    break;
+                default:
+                    if (c < 0x20)
+                        builder.append(String.format("\\u%04x", (int) c));
+                    else
+                        builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.terminal;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.OutputRecord;
+
+/**
+ * Writes command results to the registry log. Used for commands that
+ * are executed without a terminal attached.
+ */
+public class LoggingCommandOutput implements CommandOutput {
+
+    private static final LoggingCommandOutput INSTANCE = new LoggingCommandOutput();
+    private static final AnsiCommandOutput TEXT = new AnsiCommandOutput(
+            message -> CerberusRegistry.getInstance().info(message));
+
+    private LoggingCommandOutput() {}
+
+    public static LoggingCommandOutput getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void info(String message) {
+        CerberusRegistry.getInstance().info(message);
+    }
+
+    @Override
+    public void warning(String message) {
+        CerberusRegistry.getInstance().warning(message);
+    }
+
+    @Override
+    public void record(OutputRecord record) {
+        TEXT.record(record);
+    }
+}
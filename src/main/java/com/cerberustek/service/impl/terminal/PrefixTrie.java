@@ -0,0 +1,307 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.terminal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrent prefix trie mapping strings to values.
+ *
+ * The trie is persistent: every modification copies the path from the
+ * root to the modified node and publishes the new root with a single
+ * compare-and-set. Lookups therefore never lock and never observe a
+ * partially applied modification, while modifications from different
+ * threads simply retry on conflict.
+ *
+ * Besides exact lookups, the trie resolves unique prefixes to their
+ * value and lists all keys starting with a prefix in sorted order.
+ *
+ * @param <V> value type
+ */
+public class PrefixTrie<V> {
+
+    private static final Node<?> EMPTY = new Node<>(new char[0], Node.array(0), null, null, 0);
+
+    private final AtomicReference<Node<V>> root = new AtomicReference<>(empty());
+
+    /**
+     * Returns the value stored for exactly the specified key.
+     *
+     * @param key key
+     * @return value, or null if there is none
+     */
+    public V get(CharSequence key) {
+        Node<V> node = walk(root.get(), key);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Returns the value stored for the key, or the value of the only
+     * key starting with the specified prefix.
+     *
+     * @param prefix key or unique prefix of a key
+     * @return value, or null if there is no or no unique match
+     */
+    public V find(CharSequence prefix) {
+        Node<V> node = walk(root.get(), prefix);
+        if (node == null)
+            return null;
+        if (node.value != null)
+            return node.value;
+        if (node.size != 1)
+            return null;
+
+        while (node.value == null)
+            node = node.children[0];
+        return node.value;
+    }
+
+    /**
+     * Returns the key stored for the value returned by
+     * {@link #find(CharSequence)}.
+     *
+     * @param prefix key or unique prefix of a key
+     * @return key, or null if there is no or no unique match
+     */
+    public String findKey(CharSequence prefix) {
+        Node<V> node = walk(root.get(), prefix);
+        if (node == null)
+            return null;
+        if (node.value == null && node.size != 1)
+            return null;
+
+        while (node.value == null)
+            node = node.children[0];
+        return node.key;
+    }
+
+    /**
+     * Returns all keys starting with the specified prefix in sorted
+     * order.
+     *
+     * @param prefix prefix
+     * @return matching keys
+     */
+    public List<String> complete(CharSequence prefix) {
+        Node<V> node = walk(root.get(), prefix);
+        if (node == null)
+            return new ArrayList<>(0);
+
+        ArrayList<String> keys = new ArrayList<>(node.size);
+        collectKeys(node, keys);
+        return keys;
+    }
+
+    /**
+     * Returns all values in the order of their keys.
+     *
+     * @return values
+     */
+    public List<V> values() {
+        Node<V> node = root.get();
+        ArrayList<V> values = new ArrayList<>(node.size);
+        collectValues(node, values);
+        return values;
+    }
+
+    public boolean containsKey(CharSequence key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        return root.get().size;
+    }
+
+    /**
+     * Stores a value for the key.
+     *
+     * @param key key
+     * @param value value
+     */
+    public void put(String key, V value) {
+        Node<V> current;
+        do {
+            current = root.get();
+        } while (!root.compareAndSet(current, put(current, key, 0, value)));
+    }
+
+    /**
+     * Stores a value for the key, in case there is no value stored
+     * for it yet.
+     *
+     * @param key key
+     * @param value value
+     * @return true if the value has been stored
+     */
+    public boolean putIfAbsent(String key, V value) {
+        Node<V> current;
+        do {
+            current = root.get();
+            if (get(current, key) != null)
+                return false;
+        } while (!root.compareAndSet(current, put(current, key, 0, value)));
+        return true;
+    }
+
+    /**
+     * Removes the value stored for the key.
+     *
+     * @param key key
+     * @return the removed value, or null if there was none
+     */
+    public V remove(String key) {
+        Node<V> current;
+        V previous;
+        do {
+            current = root.get();
+            previous = get(current, key);
+            if (previous == null)
+                return null;
+        } while (!root.compareAndSet(current, remove(current, key, 0)));
+        return previous;
+    }
+
+    public void clear() {
+        root.set(empty());
+    }
+
+    private static <V> V get(Node<V> root, CharSequence key) {
+        Node<V> node = walk(root, key);
+        return node != null ? node.value : null;
+    }
+
+    private static <V> Node<V> walk(Node<V> node, CharSequence key) {
+        for (int i = 0; i < key.length() && node != null; i++) {
+            int index = Arrays.binarySearch(node.chars, key.charAt(i));
+            node = index >= 0 ? node.children[index] : null;
+        }
+        return node;
+    }
+
+    private static <V> Node<V> put(Node<V> node, String key, int depth, V value) {
+        if (depth == key.length())
+            return new Node<>(node.chars, node.children, key, value,
+                    node.size + (node.value == null ? 1 : 0));
+
+        char c = key.charAt(depth);
+        int index = Arrays.binarySearch(node.chars, c);
+        Node<V> child = index >= 0 ? node.children[index] : empty();
+        Node<V> updated = put(child, key, depth + 1, value);
+        return node.withChild(c, index, child, updated);
+    }
+
+    private static <V> Node<V> remove(Node<V> node, String key, int depth) {
+        if (depth == key.length())
+            return new Node<>(node.chars, node.children, null, null, node.size - 1);
+
+        char c = key.charAt(depth);
+        int index = Arrays.binarySearch(node.chars, c);
+        Node<V> child = node.children[index];
+        Node<V> updated = remove(child, key, depth + 1);
+        return node.withChild(c, index, child, updated.size == 0 ? null : updated);
+    }
+
+    private static <V> void collectKeys(Node<V> node, Collection<String> keys) {
+        if (node.value != null)
+            keys.add(node.key);
+        for (Node<V> child : node.children)
+            collectKeys(child, keys);
+    }
+
+    private static <V> void collectValues(Node<V> node, Collection<V> values) {
+        if (node.value != null)
+            values.add(node.value);
+        for (Node<V> child : node.children)
+            collectValues(child, values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V> empty() {
+        return (Node<V>) EMPTY;
+    }
+
+    /**
+     * Immutable trie node. Children are sorted by their character.
+     */
+    private static final class Node<V> {
+
+        private final char[] chars;
+        private final Node<V>[] children;
+        /** The full key of the value stored at this node */
+        private final String key;
+        private final V value;
+        /** The amount of values stored in this node and below */
+        private final int size;
+
+        private Node(char[] chars, Node<V>[] children, String key, V value, int size) {
+            this.chars = chars;
+            this.children = children;
+            this.key = key;
+            this.value = value;
+            this.size = size;
+        }
+
+        /**
+         * Returns a copy of this node with the child at the binary
+         * search {@code index} for {@code c} replaced, inserted or,
+         * if {@code updated} is null, removed.
+         */
+        private Node<V> withChild(char c, int index, Node<V> previous, Node<V> updated) {
+            int size = this.size - previous.size + (updated != null ? updated.size : 0);
+            if (index >= 0 && updated != null) {
+                Node<V>[] children = this.children.clone();
+                children[index] = updated;
+                return new Node<>(chars, children, key, value, size);
+            } else if (index >= 0) {
+                char[] chars = new char[this.chars.length - 1];
+                Node<V>[] children = array(this.children.length - 1);
+                System.arraycopy(this.chars, 0, chars, 0, index);
+                System.arraycopy(this.chars, index + 1, chars, index, chars.length - index);
+                System.arraycopy(this.children, 0, children, 0, index);
+                System.arraycopy(this.children, index + 1, children, index, children.length - index);
+                return new Node<>(chars, children, key, value, size);
+            } else {
+                int insert = -(index + 1);
+                char[] chars = new char[this.chars.length + 1];
+                Node<V>[] children = array(this.children.length + 1);
+                System.arraycopy(this.chars, 0, chars, 0, insert);
+                System.arraycopy(this.chars, insert, chars, insert + 1, this.chars.length - insert);
+                System.arraycopy(this.children, 0, children, 0, insert);
+                System.arraycopy(this.children, insert, children, insert + 1, this.children.length - insert);
+                chars[insert] = c;
+                children[insert] = updated;
+                return new Node<>(chars, children, key, value, size);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V>[] array(int length) {
+            return (Node<V>[]) new Node<?>[length];
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.terminal;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.Destroyable;
+import com.cerberustek.Initable;
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.TerminalCommand;
+import com.cerberustek.service.terminal.TerminalExecutor;
+import com.cerberustek.usr.PermissionHolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remote console for operators attaching to a running registry over a
+ * loopback TCP socket.
+ *
+ * A single selector thread accepts sessions, reads their input and
+ * writes their output. Complete lines are executed on a small shared
+ * command pool, one line at a time per session, so a session costs no
+ * thread of its own. The first line of every session is handed to the
+ * {@link Authenticator}, which decides on the permissions of the session.
+ *
+ * Commands report their results to the session directly. The log lines
+ * of the thread executing a command are copied to the session as well,
+ * so that commands logging through the registry remain visible.
+ */
+public class RemoteConsole implements Initable, Destroyable {
+
+    /** Maximum length of a single input line in bytes */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int COMMAND_QUEUE_SIZE = 256;
+
+    private final TerminalExecutor executor;
+    private final Authenticator authenticator;
+    private final InetSocketAddress address;
+
+    private final Thread selectorThread;
+    private final ThreadPoolExecutor commandPool;
+    private final CommandThreads commandThreads = new CommandThreads("Remote-Console-Command-");
+
+    private Selector selector;
+    private ServerSocketChannel server;
+
+    private volatile boolean shouldRun = false;
+
+    /**
+     * Creates a remote console listening on the loopback interface.
+     *
+     * @param executor executor resolving the commands of all sessions
+     * @param port port to listen on
+     * @param authenticator authenticates new sessions
+     */
+    public RemoteConsole(TerminalExecutor executor, int port, Authenticator authenticator) {
+        this.executor = executor;
+        this.authenticator = authenticator;
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+        selectorThread = new Thread(this::select, "Remote-Console");
+        int poolSize = Math.max(1, Integer.getInteger("de.cerberus.remote_console_threads", 2));
+        commandPool = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(COMMAND_QUEUE_SIZE), commandThreads);
+        commandPool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void init() {
+        try {
+            selector = Selector.open();
+            server = ServerSocketChannel.open();
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            CerberusRegistry.getInstance().critical("Could not open remote console on " + address + ": " + e);
+            return;
+        }
+
+        shouldRun = true;
+        selectorThread.start();
+        CerberusRegistry.getInstance().info("Remote console listening on " + address);
+    }
+
+    @Override
+    public void destroy() {
+        shouldRun = false;
+        commandPool.shutdownNow();
+        if (selector != null)
+            selector.wakeup();
+    }
+
+    /**
+     * Returns the threads currently used by the console.
+     *
+     * @return threads
+     */
+    public Collection<Thread> getThreads() {
+        ArrayList<Thread> threads = new ArrayList<>(commandThreads.threads().size() + 1);
+        threads.add(selectorThread);
+        threads.addAll(commandThreads.threads());
+        return threads;
+    }
+
+    private void select() {
+        try {
+            while (shouldRun) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+
+                    try {
+                        if (key.isAcceptable())
+                            accept();
+                        if (key.isValid() && key.isReadable())
+                            ((Session) key.attachment()).read();
+                        if (key.isValid() && key.isWritable())
+                            ((Session) key.attachment()).flush();
+                    } catch (IOException e) {
+                        if (key.attachment() != null)
+                            ((Session) key.attachment()).close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (shouldRun)
+                CerberusRegistry.getInstance().critical("Remote console failed: " + e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() != null)
+                    ((Session) key.attachment()).close();
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignore) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+
+        channel.configureBlocking(false);
+        Session session = new Session(channel);
+        session.key = channel.register(selector, SelectionKey.OP_READ, session);
+    }
+
+    /**
+     * Decides on the permissions of a new session.
+     */
+    public interface Authenticator {
+
+        /**
+         * Authenticates a session by its first line.
+         *
+         * @param credentials the first line sent by the session
+         * @return the permissions of the session, or null to reject it
+         */
+        PermissionHolder authenticate(String credentials);
+    }
+
+    /**
+     * A single operator session. Input and output are handled by the
+     * selector thread, lines are executed on the command pool.
+     */
+    private class Session {
+
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+        private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+        private final Queue<String> pendingLines = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final CommandTokenizer tokenizer = new CommandTokenizer();
+        private final PrintStream output;
+        private final CommandOutput textOutput;
+        private final CommandOutput jsonOutput;
+        /** Remote sessions cannot answer prompts of a command */
+        private final Scanner scanner = new Scanner(InputStream.nullInputStream());
+
+        private SelectionKey key;
+        private byte[] line = new byte[256];
+        private int lineLength;
+
+        private volatile PermissionHolder holder;
+        private volatile boolean closeAfterFlush;
+
+        private Session(SocketChannel channel) {
+            this.channel = channel;
+            this.output = new PrintStream(new SessionOutputStream(), true, StandardCharsets.UTF_8);
+            this.textOutput = new AnsiCommandOutput(output::println);
+            this.jsonOutput = new JsonCommandOutput(output::println);
+        }
+
+        private void read() throws IOException {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                byte b = readBuffer.get();
+                if (b == '\n') {
+                    int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                    onLine(new String(line, 0, length, StandardCharsets.UTF_8));
+                    lineLength = 0;
+                } else {
+                    if (lineLength == MAX_LINE_LENGTH) {
+                        close();
+                        return;
+                    }
+                    if (lineLength == line.length)
+                        line = Arrays.copyOf(line, Math.min(MAX_LINE_LENGTH, line.length * 2));
+                    line[lineLength++] = b;
+                }
+            }
+            readBuffer.clear();
+        }
+
+        private void onLine(String text) {
+            if (closeAfterFlush)
+                return;
+
+            if (holder == null) {
+                holder = authenticator.authenticate(text);
+                if (holder == null) {
+                    output.println("Access denied!");
+                    closeAfterFlush = true;
+                }
+                return;
+            }
+
+            pendingLines.add(text);
+            schedule();
+        }
+
+        /**
+         * Schedules the pending lines for execution, unless they are
+         * already being executed.
+         */
+        private void schedule() {
+            if (pendingLines.isEmpty() || !scheduled.compareAndSet(false, true))
+                return;
+
+            try {
+                commandPool.execute(this::executePending);
+            } catch (RejectedExecutionException e) {
+                pendingLines.clear();
+                scheduled.set(false);
+                output.println("The remote console is busy! Try again later.");
+            }
+        }
+
+        private void executePending() {
+            CerberusRegistry.getInstance().getLogger().mirrorThread(output);
+            try {
+                String text;
+                while ((text = pendingLines.poll()) != null && channel.isOpen())
+                    execute(text);
+            } finally {
+                CerberusRegistry.getInstance().getLogger().mirrorThread(null);
+                scheduled.set(false);
+            }
+            // Lines may have arrived after the queue was found empty
+            schedule();
+        }
+
+        private void execute(String text) {
+            if (tokenizer.tokenize(text) == 0)
+                return;
+
+            TerminalCommand command = executor.findCommand(tokenizer.token(0));
+            if (command == null) {
+                CerberusRegistry.getInstance().warning("Command \"" + tokenizer.token(0) + "\" not found!");
+                return;
+            }
+            if (!holder.hasPermission(command.requiredPermission())) {
+                CerberusRegistry.getInstance().warning("Access denied! Required permission:\n" +
+                        command.requiredPermission());
+                return;
+            }
+
+            CommandOutput commandOutput = tokenizer.removeTrailing(JsonCommandOutput.FLAG) ? jsonOutput : textOutput;
+            String[] args = tokenizer.toArray(1);
+            if (args.length > 0)
+                args[0] = executor.findSubCommand(command, args[0]);
+            try {
+                if (!command.execute(holder, commandOutput, scanner, args))
+                    commandOutput.warning("Wrong usage! Try: " + command.usage());
+            } catch (RuntimeException e) {
+                CerberusRegistry.getInstance().critical("Command \"" + command.executor() + "\" failed: " + e);
+            }
+        }
+
+        private void write(ByteBuffer buffer) {
+            writeQueue.add(buffer);
+            try {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                selector.wakeup();
+            } catch (CancelledKeyException ignore) {
+                // The session has been closed in the meantime
+            }
+        }
+
+        private void flush() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = writeQueue.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining())
+                    return;
+                writeQueue.poll();
+            }
+
+            if (closeAfterFlush) {
+                close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            // Output may have been queued after the queue was found empty
+            if (!writeQueue.isEmpty())
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private void close() {
+            pendingLines.clear();
+            if (key != null)
+                key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignore) {}
+        }
+
+        /**
+         * Queues all bytes written to the session output for the
+         * selector thread.
+         */
+        private class SessionOutputStream extends OutputStream {
+
+            @Override
+            public void write(int b) {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if (channel.isOpen())
+                    Session.this.write(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+            }
+        }
+    }
+}
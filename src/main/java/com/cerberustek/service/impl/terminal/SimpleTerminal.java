@@ -23,6 +23,8 @@
 
 package com.cerberustek.service.impl.terminal;
 
+import com.cerberustek.service.impl.MainServicePrintStream;
+import com.cerberustek.service.terminal.CommandOutput;
 import com.cerberustek.service.terminal.TerminalCommand;
 import com.cerberustek.service.terminal.TerminalExecutor;
 import com.cerberustek.service.terminal.TerminalProcessCommand;
@@ -31,26 +33,63 @@ import com.cerberustek.service.terminal.Terminal;
 import com.cerberustek.usr.PermissionHolder;
 
 import java.io.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Scanner;
+import java.util.concurrent.*;
 
 public class SimpleTerminal implements Terminal {
 
+    /** Marks the end of the input stream in the line queue */
+    private static final String END_OF_INPUT = new String();
+    /** Maximum amount of commands waiting for a free command thread */
+    private static final int COMMAND_QUEUE_SIZE = 64;
+    /** Maximum amount of invocations waiting for earlier invocations of the same command */
+    private static final int PENDING_INVOCATIONS = 64;
+
     private final PermissionHolder permissionHolder;
 
     private final PrintStream infoStream;
     private final PrintStream errorStream;
     private final InputStream inputStream;
+    /**
+     * Rather or not a person types the input. Piped input is executed one
+     * line after another, interactive input runs commands in the background
+     * and cancels the last command on an empty line.
+     */
+    private final boolean interactive;
+
+    /** Lines read from the input stream, waiting to be executed */
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+    /** Lines handed to commands that are waiting for input on their scanner */
+    private final BlockingQueue<String> input = new LinkedBlockingQueue<>();
+    /** Guards the waiting commands and the end of input */
+    private final Object inputLock = new Object();
+    /** Commands waiting for input that no line has been handed to yet */
+    private int inputWaiters;
+    private boolean inputEnded;
 
     private TerminalExecutor executor;
     private Thread thread;
-    private BufferedReader reader;
+    private Thread readerThread;
+
+    /** Executes the commands, so that slow commands do not block the input */
+    private final ThreadPoolExecutor commandPool;
+    /** Threads of the command pool and of the commands themselves */
+    private final CommandThreads commandThreads = new CommandThreads("Terminal-Command-");
+    /** Queues the invocations of each command behind the earlier ones */
+    private final ConcurrentHashMap<TerminalCommand, CommandQueue> commandQueues = new ConcurrentHashMap<>();
 
-    private TerminalCommand lastCommand;
+    private volatile Invocation lastInvocation;
+    /** Command outputs, writing to the console without passing the logger */
+    private final CommandOutput textOutput;
+    private final CommandOutput jsonOutput;
+    /** Scanner handed to the commands, created on first use */
+    private Scanner scanner;
 
-    private boolean shouldRun = false;
+    private volatile boolean shouldRun = false;
 
     public SimpleTerminal(TerminalExecutor executor, PrintStream infoStream, PrintStream errorStream,
                           InputStream inputStream, PermissionHolder permissionHolder) {
@@ -60,8 +99,23 @@ public class SimpleTerminal implements Terminal {
         this.infoStream = infoStream;
         this.errorStream = errorStream;
         this.inputStream = inputStream;
+        interactive = inputStream == System.in && System.console() != null;
+
+        PrintStream console = infoStream instanceof MainServicePrintStream
+                ? ((MainServicePrintStream) infoStream).getTarget() : infoStream;
+        textOutput = new AnsiCommandOutput(console::println);
+        jsonOutput = new JsonCommandOutput(console::println);
 
         thread = new Thread(new TerminalThread(), "Terminal");
+        readerThread = new Thread(new ReaderThread(), "Terminal-Reader");
+        // The reader blocks on the input stream, which cannot be
+        // interrupted, so it must not keep the vm alive
+        readerThread.setDaemon(true);
+
+        int poolSize = Math.max(1, Integer.getInteger("de.cerberus.terminal_threads", 4));
+        commandPool = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(COMMAND_QUEUE_SIZE), commandThreads);
+        commandPool.allowCoreThreadTimeOut(true);
     }
 
     public SimpleTerminal(PrintStream infoStream, PrintStream errorStream, InputStream inputStream,
@@ -96,87 +150,395 @@ public class SimpleTerminal implements Terminal {
 
     @Override
     public Collection<Thread> getThreads() {
-        return Collections.singleton(thread);
+        ArrayList<Thread> threads = new ArrayList<>(commandThreads.threads().size() + 2);
+        threads.add(thread);
+        threads.add(readerThread);
+        threads.addAll(commandThreads.threads());
+        return threads;
     }
 
     @Override
     public void destroy() {
         shouldRun = false;
+        thread.interrupt();
+        commandPool.shutdownNow();
     }
 
     @Override
     public void init() {
+        shouldRun = true;
+        readerThread.start();
         thread.start();
     }
 
-    private class TerminalThread implements Runnable {
+    /**
+     * Queues a command for execution on the command pool.
+     *
+     * If the command is already running as many times as it allows, the
+     * invocation waits until an earlier invocation of the command is
+     * done. Invocations of the same command therefore run in the order
+     * they have been entered. If too many invocations are waiting, the
+     * command is rejected.
+     *
+     * @param command command to execute
+     * @param output receives the results of the command
+     * @param args command arguments
+     * @return the invocation, or null if it has been rejected
+     */
+    private Invocation dispatch(TerminalCommand command, CommandOutput output, String[] args) {
+        CommandQueue queue = commandQueues.computeIfAbsent(command,
+                c -> new CommandQueue(Math.max(1, c.maxConcurrency())));
+        Invocation invocation = new Invocation(command, output, args, queue);
+        if (!queue.submit(invocation)) {
+            CerberusRegistry.getInstance().warning("Too many commands are queued! Try again later.");
+            return null;
+        }
+        lastInvocation = invocation;
+        return invocation;
+    }
+
+    /**
+     * Cancels the last command invocation, in case it is still queued
+     * or running.
+     *
+     * Process commands are asked to exit first, before the thread
+     * running the command is interrupted.
+     *
+     * @return true if a pending invocation has been cancelled
+     */
+    public boolean cancelLast() {
+        Invocation invocation = lastInvocation;
+        if (invocation == null || invocation.isDone())
+            return false;
+
+        if (invocation.command instanceof TerminalProcessCommand)
+            ((TerminalProcessCommand) invocation.command).exit();
+        invocation.cancel(true);
+        CerberusRegistry.getInstance().info("Cancelled command \"" + invocation.command.executor() + "\".");
+        return true;
+    }
+
+    /**
+     * Returns the scanner handed to the commands. The input stream is
+     * owned by the reader thread, so the scanner reads the lines the
+     * terminal thread passes on while a command waits for input.
+     */
+    private synchronized Scanner scanner() {
+        if (scanner == null)
+            scanner = new Scanner(new LineReader());
+        return scanner;
+    }
+
+    /**
+     * Returns the next line of input for a command, or null if the
+     * input stream has ended.
+     */
+    private String nextInput() throws InterruptedException {
+        if (!interactive) {
+            // The terminal thread waits for the command, so it can read the lines itself
+            String line = lines.take();
+            if (line == END_OF_INPUT) {
+                lines.add(END_OF_INPUT);
+                return null;
+            }
+            return line;
+        }
+
+        synchronized (inputLock) {
+            if (inputEnded)
+                return null;
+            inputWaiters++;
+        }
+        String line;
+        try {
+            line = input.take();
+        } catch (InterruptedException e) {
+            synchronized (inputLock) {
+                // Give up the claim, or the line that has already been handed over for it
+                if (inputWaiters > 0)
+                    inputWaiters--;
+                else {
+                    String missed = input.poll();
+                    if (missed != null && missed != END_OF_INPUT)
+                        CerberusRegistry.getInstance().warning("Input \"" + missed + "\" has been dropped, " +
+                                "the command waiting for it has been cancelled.");
+                }
+            }
+            throw e;
+        }
+        return line == END_OF_INPUT ? null : line;
+    }
+
+    /**
+     * Hands a line to a command waiting for input, if there is one.
+     *
+     * @return true if a command takes the line
+     */
+    private boolean handOver(String line) {
+        synchronized (inputLock) {
+            if (inputWaiters == 0)
+                return false;
+            inputWaiters--;
+            input.add(line);
+            return true;
+        }
+    }
+
+    /**
+     * Ends the input of all commands, including those waiting for it.
+     */
+    private void endInput() {
+        synchronized (inputLock) {
+            inputEnded = true;
+            for (; inputWaiters > 0; inputWaiters--)
+                input.add(END_OF_INPUT);
+        }
+    }
+
+    /**
+     * Invocations of a single command. At most {@code maxConcurrency}
+     * invocations run at once, the others wait in the order they have
+     * been submitted.
+     */
+    private class CommandQueue {
+
+        private final int maxConcurrency;
+        private final ArrayDeque<Invocation> pending = new ArrayDeque<>();
+        private int running;
+
+        private CommandQueue(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        private synchronized boolean submit(Invocation invocation) {
+            if (running < maxConcurrency) {
+                running++;
+                start(invocation);
+                return true;
+            }
+            if (pending.size() >= PENDING_INVOCATIONS)
+                return false;
+            pending.add(invocation);
+            return true;
+        }
+
+        /**
+         * Called once an invocation is done or has been cancelled, starts
+         * the next waiting invocation in its place.
+         */
+        private synchronized void finished(Invocation invocation) {
+            if (!invocation.started) {
+                pending.remove(invocation);
+                return;
+            }
+
+            Invocation next = pending.poll();
+            if (next != null)
+                start(next);
+            else
+                running--;
+        }
+
+        private void start(Invocation invocation) {
+            invocation.started = true;
+            try {
+                commandPool.execute(invocation);
+            } catch (RejectedExecutionException e) {
+                CerberusRegistry.getInstance().warning("Too many commands are queued! Dropped \"" +
+                        invocation.command.executor() + "\".");
+                invocation.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * A single execution of a command on the command pool. Lets its
+     * command queue start the next invocation once it is done or
+     * cancelled.
+     */
+    private class Invocation extends FutureTask<Boolean> {
+
+        private final TerminalCommand command;
+        private final CommandQueue queue;
+        /** Rather or not the invocation has been handed to the command pool, guarded by the queue */
+        private boolean started;
+
+        private Invocation(TerminalCommand command, CommandOutput output, String[] args, CommandQueue queue) {
+            super(() -> {
+                try {
+                    if (!command.execute(permissionHolder, output, scanner(), args)) {
+                        output.warning("Wrong usage! Try: " + command.usage());
+                        return false;
+                    }
+                    return true;
+                } catch (RuntimeException e) {
+                    CerberusRegistry.getInstance().critical("Command \"" + command.executor() +
+                            "\" failed: " + e);
+                    return false;
+                }
+            });
+            this.command = command;
+            this.queue = queue;
+        }
+
+        @Override
+        protected void done() {
+            queue.finished(this);
+        }
+    }
+
+    /**
+     * Reads lines from the input stream with blocking reads and hands
+     * them to the terminal thread as soon as they are complete.
+     */
+    private class ReaderThread implements Runnable {
 
         @Override
         public void run() {
-            shouldRun = true;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+            try {
+                String line;
+                while (shouldRun && (line = reader.readLine()) != null)
+                    lines.add(line);
+            } catch (IOException e) {
+                if (shouldRun)
+                    e.printStackTrace();
+            }
+            lines.add(END_OF_INPUT);
+        }
+    }
+
+    /**
+     * Reader over the lines of input passed on to commands.
+     */
+    private class LineReader extends Reader {
+
+        private String line;
+        private int position;
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+            if (line == null || position > line.length()) {
+                try {
+                    line = nextInput();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                position = 0;
+                if (line == null)
+                    return -1;
+            }
+
+            // Hand out the rest of the current line, followed by its line break
+            int count = 0;
+            while (count < length && position < line.length())
+                buffer[offset + count++] = line.charAt(position++);
+            if (count < length && position == line.length()) {
+                buffer[offset + count++] = '\n';
+                position++;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {}
+    }
 
-            reader = new BufferedReader(new InputStreamReader(inputStream));
+    private class TerminalThread implements Runnable {
+
+        private final CommandTokenizer tokenizer = new CommandTokenizer();
+
+        @Override
+        public void run() {
             try {
                 String line;
-                Outer : while (shouldRun) {
-                    // TODO find a better way to do this
-                    while (!reader.ready()) {
-                        if (!shouldRun)
-                            break Outer;
-                        //noinspection BusyWait
-                        Thread.sleep(200);
-                    }
-                    if (!shouldRun)
+                while (shouldRun) {
+                    line = lines.take();
+                    if (line == END_OF_INPUT || !shouldRun)
                         break;
-                    line = reader.readLine();
 
-                    String[] command = splitRaw(line);
-                    TerminalCommand c = executor.getCommand(command[0]);
+                    // Lines go to a command waiting for input first
+                    if (handOver(line))
+                        continue;
+
+                    if (line.endsWith("\t")) {
+                        printCompletions(line.substring(0, line.length() - 1));
+                        continue;
+                    }
+
+                    if (tokenizer.tokenize(line) == 0) {
+                        // Only a person at the console cancels with an empty line
+                        if (interactive && !cancelLast())
+                            CerberusRegistry.getInstance().warning("Command \"\" not found!");
+                        continue;
+                    }
+
+                    TerminalCommand c = executor.findCommand(tokenizer.token(0));
                     if (c != null) {
-                        if (!permissionHolder.hasPermission(c.requiredPermission()))
+                        if (!permissionHolder.hasPermission(c.requiredPermission())) {
                             CerberusRegistry.getInstance().warning("Access denied! Required permission:\n" +
                                     c.requiredPermission());
-
-                        String[] args = new String[command.length - 1];
-                        System.arraycopy(command, 1, args, 0, args.length);
-                        if (!c.execute(permissionHolder, new Scanner(inputStream), args)) {
-                            CerberusRegistry.getInstance().warning("Wrong usage! Try: " + c.usage());
                             continue;
                         }
-                        lastCommand = c;
+
+                        CommandOutput output = tokenizer.removeTrailing(JsonCommandOutput.FLAG)
+                                ? jsonOutput : textOutput;
+                        String[] args = tokenizer.toArray(1);
+                        if (args.length > 0)
+                            args[0] = executor.findSubCommand(c, args[0]);
+                        Invocation invocation = dispatch(c, output, args);
+                        if (invocation != null && !interactive)
+                            await(invocation);
                     } else {
-                        if (command[0].isEmpty() && lastCommand instanceof TerminalProcessCommand)
-                            ((TerminalProcessCommand) lastCommand).exit();
+                        String name = tokenizer.token(0).toString();
+                        Collection<String> candidates = executor.complete(name);
+                        if (candidates.size() > 1)
+                            CerberusRegistry.getInstance().warning("Command \"" + name + "\" is ambiguous: " +
+                                    String.join(", ", candidates));
                         else
-                            CerberusRegistry.getInstance().warning("Command \"" + command[0] + "\" not found!");
+                            CerberusRegistry.getInstance().warning("Command \"" + name + "\" not found!");
                     }
                 }
-            } catch (IOException | InterruptedException e) {
-                e.printStackTrace();
+            } catch (InterruptedException e) {
+                // The terminal has been destroyed
             }
+            endInput();
             shouldRun = false;
         }
 
-        private String[] splitRaw(String command) {
-            ArrayList<String> list = new ArrayList<>();
-            StringBuilder builder = new StringBuilder();
-            char[] chars = command.toCharArray();
-
-            boolean quotation = false;
-            for (char c : chars) {
-                if (c == '"')
-                    quotation = !quotation;
-                else if (!quotation && c == ' ') {
-                    list.add(builder.toString());
-                    builder = new StringBuilder();
-                } else
-                    builder.append(c);
+        /**
+         * Waits until a command of piped input is done, so the next line
+         * is executed after it, as it would be by a shell.
+         */
+        private void await(Invocation invocation) throws InterruptedException {
+            try {
+                invocation.get();
+            } catch (ExecutionException | CancellationException e) {
+                // Failures have already been reported by the invocation
+            }
+        }
+
+        /**
+         * Prints the completion candidates for the last token of a
+         * line that has been terminated with a tab.
+         */
+        private void printCompletions(String line) {
+            tokenizer.tokenize(line);
+            String[] tokens = tokenizer.toArray(0);
+            // A trailing separator starts a new, still empty token
+            if (tokens.length == 0 || line.endsWith(" ")) {
+                tokens = Arrays.copyOf(tokens, tokens.length + 1);
+                tokens[tokens.length - 1] = "";
             }
-            list.add(builder.toString());
 
-            String[] output = new String[list.size()];
-            list.toArray(output);
-            return output;
+            Collection<String> candidates = executor.complete(tokens);
+            if (candidates.isEmpty())
+                CerberusRegistry.getInstance().info("No completions for \"" + tokens[tokens.length - 1] + "\".");
+            else
+                CerberusRegistry.getInstance().info(String.join("  ", candidates));
         }
     }
 }
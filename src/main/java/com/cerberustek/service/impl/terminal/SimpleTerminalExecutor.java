@@ -28,57 +28,108 @@ import com.cerberustek.service.terminal.TerminalExecutor;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
-import java.util.ConcurrentModificationException;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SimpleTerminalExecutor implements TerminalExecutor {
 
-    private HashMap<String, TerminalCommand> commandMap;
+    /** Commands by executor. Lock-free for the terminal thread */
+    private final PrefixTrie<TerminalCommand> commands = new PrefixTrie<>();
+    /** Lazily built sub-command tries by command */
+    private final ConcurrentHashMap<TerminalCommand, PrefixTrie<String>> subCommands = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
 
     @Override
     public void init() {
-        commandMap = new HashMap<>();
+        commands.clear();
+        subCommands.clear();
+        version.incrementAndGet();
     }
 
     @Override
     public void registerCommand(@NotNull TerminalCommand command) {
-        try {
-            if (!hasCommand(command))
-                commandMap.put(command.executor(), command);
-        } catch (ConcurrentModificationException e) {
-            e.printStackTrace();
-        }
+        if (commands.putIfAbsent(command.executor(), command))
+            version.incrementAndGet();
     }
 
     @Override
     public void unregisterCommand(@NotNull TerminalCommand command) {
-        try {
-            commandMap.remove(command.executor());
-        } catch (ConcurrentModificationException e) {
-            e.printStackTrace();
+        TerminalCommand removed = commands.remove(command.executor());
+        if (removed != null) {
+            subCommands.remove(removed);
+            version.incrementAndGet();
         }
     }
 
     @Override
     public boolean hasCommand(TerminalCommand command) {
-        try {
-            if (command != null)
-                return commandMap.containsKey(command.executor());
-        } catch (ConcurrentModificationException ignore) {}
-        return false;
+        return command != null && commands.containsKey(command.executor());
     }
 
     @Override
     public TerminalCommand getCommand(String executor) {
-        try {
-            if (executor != null)
-                return commandMap.get(executor);
-        } catch (ConcurrentModificationException ignore) {}
+        if (executor != null)
+            return commands.get(executor);
         return null;
     }
 
+    @Override
+    public TerminalCommand findCommand(CharSequence prefix) {
+        if (prefix == null || prefix.length() == 0)
+            return null;
+        return commands.find(prefix);
+    }
+
+    @Override
+    public String findSubCommand(TerminalCommand command, String prefix) {
+        PrefixTrie<String> trie = subCommandTrie(command);
+        if (trie == null)
+            return prefix;
+
+        String subCommand = trie.find(prefix.toLowerCase(Locale.ROOT));
+        return subCommand != null ? subCommand : prefix;
+    }
+
+    @Override
+    public Collection<String> complete(String... tokens) {
+        if (tokens.length == 0)
+            return commands.complete("");
+        if (tokens.length == 1)
+            return commands.complete(tokens[0]);
+
+        TerminalCommand command = findCommand(tokens[0]);
+        if (command == null)
+            return Collections.emptyList();
+
+        String prefix = tokens[tokens.length - 1];
+        PrefixTrie<String> trie = subCommandTrie(command);
+        if (tokens.length == 2 && trie != null)
+            return trie.complete(prefix.toLowerCase(Locale.ROOT));
+        return command.complete(tokens.length - 2, prefix);
+    }
+
     @Override
     public Collection<TerminalCommand> commands() {
-        return commandMap.values();
+        return commands.values();
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    private PrefixTrie<String> subCommandTrie(TerminalCommand command) {
+        Collection<String> names = command.subCommands();
+        if (names.isEmpty())
+            return null;
+
+        return subCommands.computeIfAbsent(command, c -> {
+            PrefixTrie<String> trie = new PrefixTrie<>();
+            for (String name : names)
+                trie.put(name.toLowerCase(Locale.ROOT), name);
+            return trie;
+        });
     }
 }
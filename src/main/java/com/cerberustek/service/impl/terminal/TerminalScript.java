@@ -0,0 +1,251 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.impl.terminal;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.service.terminal.CommandOutput;
+import com.cerberustek.service.terminal.OutputRecord;
+import com.cerberustek.service.terminal.TerminalCommand;
+import com.cerberustek.service.terminal.TerminalExecutor;
+import com.cerberustek.usr.PermissionHolder;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A batch of terminal commands, parsed and validated as a whole before
+ * any of them is executed.
+ *
+ * Scripts contain one command per line. Empty lines and lines starting
+ * with {@code #} are ignored. Commands and sub-commands may be
+ * abbreviated just like on the terminal.
+ */
+public class TerminalScript {
+
+    private final List<Line> lines;
+
+    private TerminalScript(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Parses a script.
+     *
+     * All lines are resolved against the commands of the executor and
+     * checked against the permissions of the holder. In case any line
+     * is invalid, no command is executed and an exception listing all
+     * invalid lines is thrown.
+     *
+     * @param executor executor to resolve the commands with
+     * @param holder permission holder executing the script
+     * @param source lines of the script
+     * @return parsed script
+     * @throws IllegalArgumentException if the script contains invalid
+     *      lines
+     */
+    public static TerminalScript parse(TerminalExecutor executor, PermissionHolder holder,
+                                       Collection<String> source) {
+        CommandTokenizer tokenizer = new CommandTokenizer();
+        ArrayList<Line> lines = new ArrayList<>();
+        StringBuilder errors = new StringBuilder();
+
+        int number = 0;
+        for (String text : source) {
+            number++;
+            if (tokenizer.tokenize(text) == 0 ||
+                    (tokenizer.token(0).length() > 0 && tokenizer.token(0).charAt(0) == '#'))
+                continue;
+
+            TerminalCommand command = executor.findCommand(tokenizer.token(0));
+            if (command == null) {
+                errors.append("\n\tline ").append(number).append(": unknown or ambiguous command \"")
+                        .append(tokenizer.token(0)).append('"');
+                continue;
+            }
+            if (!holder.hasPermission(command.requiredPermission())) {
+                errors.append("\n\tline ").append(number).append(": missing permission ")
+                        .append(command.requiredPermission());
+                continue;
+            }
+
+            String[] args = tokenizer.toArray(1);
+            if (args.length > 0)
+                args[0] = executor.findSubCommand(command, args[0]);
+            lines.add(new Line(number, text.trim(), command, args));
+        }
+
+        if (errors.length() > 0)
+            throw new IllegalArgumentException("Invalid script:" + errors);
+        return new TerminalScript(lines);
+    }
+
+    /**
+     * Returns rather or not the script contains the command.
+     *
+     * @param command command
+     * @return contains command?
+     */
+    public boolean contains(TerminalCommand command) {
+        for (Line line : lines) {
+            if (line.command == command)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the amount of commands in this script.
+     *
+     * @return amount of commands
+     */
+    public int size() {
+        return lines.size();
+    }
+
+    /**
+     * Executes all commands of the script.
+     *
+     * Sequential scripts run on the calling thread, one command right
+     * after the other. Parallel scripts run all commands at once on a
+     * temporary pool and wait for all of them; this is only suited for
+     * commands that do not depend on each other. Called from a command
+     * thread of a terminal, the pool creates its threads through that
+     * terminal, so they are stopped together with it. Parallel commands
+     * do not get any input.
+     *
+     * @param holder permission holder executing the script
+     * @param output receives the results of the commands
+     * @param scanner scanner handed to the commands of sequential scripts
+     * @param parallel execute the commands concurrently
+     * @param stopOnError stop at the first failed command. Has no
+     *                    effect on parallel scripts
+     * @param timing log the execution time of every command
+     * @return the amount of failed commands
+     * @throws InterruptedException if the calling thread is interrupted
+     *      while the script is executed
+     */
+    public int execute(PermissionHolder holder, CommandOutput output, Scanner scanner, boolean parallel,
+                       boolean stopOnError, boolean timing) throws InterruptedException {
+        long start = System.nanoTime();
+        int failed = 0;
+        int executed = 0;
+
+        if (parallel) {
+            ExecutorService pool = newBatchPool();
+            try {
+                ArrayList<Future<Boolean>> results = new ArrayList<>(lines.size());
+                for (Line line : lines)
+                    results.add(pool.submit(() -> line.execute(holder, output, new Scanner(Reader.nullReader()),
+                            timing)));
+                for (Future<Boolean> result : results) {
+                    executed++;
+                    try {
+                        if (!result.get())
+                            failed++;
+                    } catch (ExecutionException e) {
+                        failed++;
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        } else {
+            for (Line line : lines) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+
+                executed++;
+                if (!line.execute(holder, output, scanner, timing)) {
+                    failed++;
+                    if (stopOnError) {
+                        output.warning("Stopping script at line " + line.number + "!");
+                        break;
+                    }
+                }
+            }
+        }
+
+        output.info("Executed " + executed + "/" + lines.size() + " commands in " +
+                (System.nanoTime() - start) / 1_000_000 + " ms, " + failed + " failed.");
+        return failed;
+    }
+
+    private ExecutorService newBatchPool() {
+        int threads = Math.max(1, Math.min(lines.size(), Runtime.getRuntime().availableProcessors()));
+        CommandThreads owner = CommandThreads.current();
+        if (owner != null)
+            return Executors.newFixedThreadPool(threads, owner);
+
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "Terminal-Batch-" + count.incrementAndGet()));
+    }
+
+    /**
+     * A single, resolved command of a script.
+     */
+    private static class Line {
+
+        private final int number;
+        private final String text;
+        private final TerminalCommand command;
+        private final String[] args;
+
+        private Line(int number, String text, TerminalCommand command, String[] args) {
+            this.number = number;
+            this.text = text;
+            this.command = command;
+            this.args = args;
+        }
+
+        private boolean execute(PermissionHolder holder, CommandOutput output, Scanner scanner, boolean timing) {
+            long start = System.nanoTime();
+            boolean success;
+            try {
+                success = command.execute(holder, output, scanner, args);
+                if (!success)
+                    output.warning("Wrong usage in line " + number + "! Try: " +
+                            command.usage());
+            } catch (RuntimeException e) {
+                CerberusRegistry.getInstance().critical("Command in line " + number + " failed: " + e);
+                success = false;
+            }
+
+            if (timing) {
+                double millis = (System.nanoTime() - start) / 1000 / 1000d;
+                output.record(OutputRecord.of("timing").with("line", number).with("command", text)
+                        .with("millis", millis).text("[" + number + "] " + text + " took " + millis + " ms"));
+            }
+            return success;
+        }
+    }
+}
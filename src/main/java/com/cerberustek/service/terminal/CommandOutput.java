@@ -0,0 +1,57 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.terminal;
+
+/**
+ * Receives the results of a terminal command.
+ *
+ * Commands report their results through this interface instead of the
+ * registry log, which lets the terminal decide how the results are
+ * rendered, e.g. as coloured text for operators or as JSON lines for
+ * scripts.
+ */
+public interface CommandOutput {
+
+    /**
+     * Reports an informational message.
+     *
+     * @param message message
+     */
+    void info(String message);
+
+    /**
+     * Reports a problem that kept the command from completing its
+     * task, such as missing permissions or unknown arguments.
+     *
+     * @param message message
+     */
+    void warning(String message);
+
+    /**
+     * Reports a structured result.
+     *
+     * @param record result
+     */
+    void record(OutputRecord record);
+}
@@ -0,0 +1,98 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.service.terminal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A structured command result, consisting of a type, a set of ordered
+ * fields and an optional text rendering for the operator terminal.
+ *
+ * Field values should be strings, numbers or booleans.
+ */
+public class OutputRecord {
+
+    private final String type;
+    private final LinkedHashMap<String, Object> fields = new LinkedHashMap<>();
+    private String text;
+
+    private OutputRecord(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Creates an empty record.
+     *
+     * @param type type of the record, e.g. the kind of object it
+     *             describes
+     * @return record
+     */
+    public static OutputRecord of(String type) {
+        return new OutputRecord(type);
+    }
+
+    /**
+     * Adds a field to the record.
+     *
+     * @param key field name
+     * @param value field value
+     * @return this record
+     */
+    public OutputRecord with(String key, Object value) {
+        fields.put(key, value);
+        return this;
+    }
+
+    /**
+     * Sets the text shown for this record on the operator terminal.
+     * Without a text, the fields are listed instead.
+     *
+     * @param text text, may contain ANSI colour codes
+     * @return this record
+     */
+    public OutputRecord text(String text) {
+        this.text = text;
+        return this;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Map<String, Object> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Returns the text shown for this record on the operator
+     * terminal.
+     *
+     * @return text, or null if none has been set
+     */
+    public String getText() {
+        return text;
+    }
+}
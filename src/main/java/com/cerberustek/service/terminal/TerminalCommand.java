@@ -25,13 +25,67 @@ package com.cerberustek.service.terminal;
 
 import com.cerberustek.usr.PermissionHolder;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Scanner;
 
 public interface TerminalCommand {
 
     boolean execute(PermissionHolder holder, Scanner scanner, String... args);
 
+    /**
+     * Executes the command and reports its results to the output.
+     *
+     * Commands that do not report structured results keep logging
+     * through the registry, which is what the default implementation
+     * does.
+     *
+     * @param holder permissions of the caller
+     * @param output receives the results of the command
+     * @param scanner scanner for further input
+     * @param args command arguments
+     * @return false if the command has been used wrongly
+     */
+    default boolean execute(PermissionHolder holder, CommandOutput output, Scanner scanner, String... args) {
+        return execute(holder, scanner, args);
+    }
+
     String executor();
     String usage();
     String requiredPermission();
+
+    /**
+     * Returns how many invocations of this command may run at the
+     * same time. Further invocations wait, in the order they have
+     * been entered, until one of the running invocations has finished.
+     *
+     * @return maximum amount of concurrent invocations
+     */
+    default int maxConcurrency() {
+        return 1;
+    }
+
+    /**
+     * Returns the sub-commands expected as first argument of this
+     * command. Unique prefixes of sub-commands are expanded by the
+     * terminal before the command is executed.
+     *
+     * @return sub-commands, in lower case
+     */
+    default Collection<String> subCommands() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns completion candidates for an argument of this command.
+     * Sub-commands are completed by the terminal and do not have to
+     * be returned here.
+     *
+     * @param index index of the argument
+     * @param prefix the part of the argument typed so far
+     * @return completion candidates
+     */
+    default Collection<String> complete(int index, String prefix) {
+        return Collections.emptyList();
+    }
 }
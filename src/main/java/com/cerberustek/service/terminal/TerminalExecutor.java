@@ -23,10 +23,16 @@
 
 package com.cerberustek.service.terminal;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
 
 public interface TerminalExecutor {
 
+    /** Version of executors that do not track changes of their commands */
+    long UNVERSIONED = -1;
+
     void init();
 
     void registerCommand(TerminalCommand command);
@@ -35,5 +41,111 @@ public interface TerminalExecutor {
 
     TerminalCommand getCommand(String executor);
 
+    /**
+     * Returns the command registered for the executor, or the only
+     * command whose executor starts with the specified prefix.
+     *
+     * The default implementation searches all commands.
+     *
+     * @param prefix executor or unique prefix of an executor
+     * @return command, or null if there is no unique match
+     */
+    default TerminalCommand findCommand(CharSequence prefix) {
+        if (prefix == null || prefix.length() == 0)
+            return null;
+        String executor = prefix.toString();
+        TerminalCommand command = getCommand(executor);
+        if (command != null)
+            return command;
+
+        for (TerminalCommand candidate : commands()) {
+            if (candidate.executor().startsWith(executor)) {
+                if (command != null)
+                    return null;
+                command = candidate;
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Expands a unique prefix of a sub-command of the command.
+     *
+     * The default implementation searches all sub-commands of the
+     * command, ignoring case.
+     *
+     * @param command command
+     * @param prefix sub-command or unique prefix of a sub-command
+     * @return the full sub-command, or the prefix if there is no
+     *      unique match
+     */
+    default String findSubCommand(TerminalCommand command, String prefix) {
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        String match = null;
+        for (String subCommand : command.subCommands()) {
+            String lower = subCommand.toLowerCase(Locale.ROOT);
+            if (lower.equals(lowerPrefix))
+                return subCommand;
+            if (lower.startsWith(lowerPrefix)) {
+                if (match != null)
+                    return prefix;
+                match = subCommand;
+            }
+        }
+        return match != null ? match : prefix;
+    }
+
+    /**
+     * Returns the completion candidates for the last of the typed
+     * tokens of a command line.
+     *
+     * The default implementation completes executors from all
+     * commands and sub-commands from {@link TerminalCommand#subCommands()},
+     * and leaves all further arguments to the command.
+     *
+     * @param tokens tokens typed so far, the last one possibly empty
+     * @return completion candidates for the last token
+     */
+    default Collection<String> complete(String... tokens) {
+        String prefix = tokens.length > 0 ? tokens[tokens.length - 1] : "";
+        ArrayList<String> candidates = new ArrayList<>();
+        if (tokens.length <= 1) {
+            for (TerminalCommand command : commands()) {
+                if (command.executor().startsWith(prefix))
+                    candidates.add(command.executor());
+            }
+            candidates.sort(null);
+            return candidates;
+        }
+
+        TerminalCommand command = findCommand(tokens[0]);
+        if (command == null)
+            return Collections.emptyList();
+        if (tokens.length > 2 || command.subCommands().isEmpty())
+            return command.complete(tokens.length - 2, prefix);
+
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        for (String subCommand : command.subCommands()) {
+            if (subCommand.toLowerCase(Locale.ROOT).startsWith(lowerPrefix))
+                candidates.add(subCommand);
+        }
+        candidates.sort(null);
+        return candidates;
+    }
+
     Collection<TerminalCommand> commands();
+
+    /**
+     * Returns a counter that changes whenever a command is registered
+     * or unregistered. Can be used to cache data derived from the
+     * registered commands.
+     *
+     * The default implementation does not track changes and returns
+     * {@link #UNVERSIONED}, in which case nothing may be cached.
+     *
+     * @return modification counter, or {@link #UNVERSIONED}
+     */
+    default long version() {
+        return UNVERSIONED;
+    }
 }
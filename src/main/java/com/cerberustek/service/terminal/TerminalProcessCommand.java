@@ -25,5 +25,10 @@ package com.cerberustek.service.terminal;
 
 public interface TerminalProcessCommand extends TerminalCommand {
 
+    /**
+     * Asks the running process to exit. This is called when the
+     * process is cancelled from the terminal, right before the
+     * thread executing the process is interrupted.
+     */
     void exit();
 }
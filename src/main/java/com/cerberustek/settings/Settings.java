@@ -26,6 +26,8 @@ package com.cerberustek.settings;
 import com.cerberustek.Destroyable;
 import com.cerberustek.Initable;
 
+import java.util.Map;
+
 public interface Settings extends Initable, Destroyable {
 
     boolean getBoolean(String tag, boolean defaultValue);
@@ -58,9 +60,50 @@ public interface Settings extends Initable, Destroyable {
     String getString(String tag, String defaultValue);
     void setString(String tag, String value);
 
+    /**
+     * Returns the value stored for the tag, decoded with the codec
+     * registered for the class of {@code defaultValue}. In case no
+     * codec is registered for that class, the raw string value is
+     * returned.
+     *
+     * @param tag tag
+     * @param defaultValue default value
+     * @return value
+     */
     Object getObject(String tag, Object defaultValue);
+
+    /**
+     * Stores a value, encoded with the codec registered for its
+     * class. Values without a registered codec are stored by their
+     * {@code toString()} representation.
+     *
+     * @param tag tag
+     * @param value value
+     */
     void setObject(String tag, Object value);
-    
+
+    <T> T getObject(String tag, Class<T> type, T defaultValue);
+
+    <T> T getObject(String tag, SettingsCodec<T> codec, T defaultValue);
+    <T> void setObject(String tag, SettingsCodec<T> codec, T value);
+
+    /**
+     * Registers a codec for its value class. Codecs for enum types
+     * are created on demand and do not have to be registered.
+     *
+     * @param codec codec
+     */
+    void registerCodec(SettingsCodec<?> codec);
+
+    /**
+     * Returns an immutable copy of all settings at a single point
+     * in time, which can be iterated without blocking other
+     * threads accessing the settings.
+     *
+     * @return snapshot of all tags and their raw values
+     */
+    Map<String, String> snapshot();
+
     void reload();
     void save();
 }
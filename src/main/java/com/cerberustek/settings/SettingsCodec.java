@@ -0,0 +1,63 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.settings;
+
+/**
+ * Converts structured setting values from and to their string
+ * representation inside of a settings file.
+ *
+ * Decoded values are cached by the settings implementation and
+ * handed out to every caller of the same key until the key
+ * changes. Codecs should therefore return values that are either
+ * immutable or not modified by the caller.
+ *
+ * @param <T> The type of the values converted by the codec
+ */
+public interface SettingsCodec<T> {
+
+    /**
+     * Returns the class of the values converted by this codec.
+     *
+     * @return value class
+     */
+    Class<T> type();
+
+    /**
+     * Converts a value into its string representation.
+     *
+     * @param value value to encode
+     * @return string representation
+     */
+    String encode(T value);
+
+    /**
+     * Converts a string representation back into a value.
+     *
+     * @param raw string representation
+     * @return decoded value
+     * @throws IllegalArgumentException in case the string
+     *      representation is malformed
+     */
+    T decode(String raw);
+}
@@ -0,0 +1,545 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.settings.impl;
+
+import com.cerberustek.settings.SettingsCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Built-in codecs for structured setting values.
+ *
+ * Arrays and lists are stored as comma separated values. String
+ * elements escape commas and backslashes with a leading backslash. A
+ * single empty element is stored as a lone backslash, since an empty
+ * value stands for no elements. Numeric elements are parsed straight
+ * from the raw value without splitting it into sub-strings first; only
+ * floating point values with more than 15 significant digits, large
+ * exponents or special values fall back to the parser of the JDK.
+ */
+public final class SettingsCodecs {
+
+    private static final char SEPARATOR = ',';
+    private static final char ESCAPE = '\\';
+    /** Powers of ten that are exact as double */
+    private static final double[] DOUBLE_POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /** Powers of ten that are exact as float */
+    private static final float[] FLOAT_POWERS = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    public static final SettingsCodec<Boolean> BOOLEAN = scalar(Boolean.class, Boolean::parseBoolean);
+    public static final SettingsCodec<Integer> INTEGER = scalar(Integer.class, s -> Integer.parseInt(s.trim()));
+    public static final SettingsCodec<Long> LONG = scalar(Long.class, s -> Long.parseLong(s.trim()));
+    public static final SettingsCodec<Float> FLOAT = scalar(Float.class, Float::parseFloat);
+    public static final SettingsCodec<Double> DOUBLE = scalar(Double.class, Double::parseDouble);
+    public static final SettingsCodec<String> STRING = scalar(String.class, s -> s);
+
+    public static final SettingsCodec<boolean[]> BOOLEAN_ARRAY = new SettingsCodec<>() {
+        @Override
+        public Class<boolean[]> type() {
+            return boolean[].class;
+        }
+
+        @Override
+        public String encode(boolean[] value) {
+            StringBuilder builder = new StringBuilder(value.length * 6);
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0)
+                    builder.append(SEPARATOR);
+                builder.append(value[i]);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public boolean[] decode(String raw) {
+            boolean[] out = new boolean[count(raw)];
+            int begin = 0;
+            for (int i = 0; i < out.length; i++) {
+                int end = next(raw, begin);
+                int first = skip(raw, begin, end);
+                out[i] = trim(raw, first, end) - first == 4 && raw.regionMatches(true, first, "true", 0, 4);
+                begin = end + 1;
+            }
+            return out;
+        }
+    };
+
+    public static final SettingsCodec<int[]> INT_ARRAY = new SettingsCodec<>() {
+        @Override
+        public Class<int[]> type() {
+            return int[].class;
+        }
+
+        @Override
+        public String encode(int[] value) {
+            StringBuilder builder = new StringBuilder(value.length * 4);
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0)
+                    builder.append(SEPARATOR);
+                builder.append(value[i]);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public int[] decode(String raw) {
+            int[] out = new int[count(raw)];
+            int begin = 0;
+            for (int i = 0; i < out.length; i++) {
+                int end = next(raw, begin);
+                out[i] = Integer.parseInt(raw, skip(raw, begin, end), trim(raw, begin, end), 10);
+                begin = end + 1;
+            }
+            return out;
+        }
+    };
+
+    public static final SettingsCodec<long[]> LONG_ARRAY = new SettingsCodec<>() {
+        @Override
+        public Class<long[]> type() {
+            return long[].class;
+        }
+
+        @Override
+        public String encode(long[] value) {
+            StringBuilder builder = new StringBuilder(value.length * 8);
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0)
+                    builder.append(SEPARATOR);
+                builder.append(value[i]);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public long[] decode(String raw) {
+            long[] out = new long[count(raw)];
+            int begin = 0;
+            for (int i = 0; i < out.length; i++) {
+                int end = next(raw, begin);
+                out[i] = Long.parseLong(raw, skip(raw, begin, end), trim(raw, begin, end), 10);
+                begin = end + 1;
+            }
+            return out;
+        }
+    };
+
+    public static final SettingsCodec<float[]> FLOAT_ARRAY = new SettingsCodec<>() {
+        @Override
+        public Class<float[]> type() {
+            return float[].class;
+        }
+
+        @Override
+        public String encode(float[] value) {
+            StringBuilder builder = new StringBuilder(value.length * 8);
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0)
+                    builder.append(SEPARATOR);
+                builder.append(value[i]);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public float[] decode(String raw) {
+            return parseFloats(raw, count(raw));
+        }
+    };
+
+    public static final SettingsCodec<double[]> DOUBLE_ARRAY = new SettingsCodec<>() {
+        @Override
+        public Class<double[]> type() {
+            return double[].class;
+        }
+
+        @Override
+        public String encode(double[] value) {
+            StringBuilder builder = new StringBuilder(value.length * 8);
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0)
+                    builder.append(SEPARATOR);
+                builder.append(value[i]);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public double[] decode(String raw) {
+            double[] out = new double[count(raw)];
+            int begin = 0;
+            for (int i = 0; i < out.length; i++) {
+                int end = next(raw, begin);
+                out[i] = parseDouble(raw, begin, end);
+                begin = end + 1;
+            }
+            return out;
+        }
+    };
+
+    public static final SettingsCodec<String[]> STRING_ARRAY = new SettingsCodec<>() {
+        @Override
+        public Class<String[]> type() {
+            return String[].class;
+        }
+
+        @Override
+        public String encode(String[] value) {
+            if (value.length == 1 && value[0].isEmpty())
+                return String.valueOf(ESCAPE);
+
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < value.length; i++) {
+                if (i > 0)
+                    builder.append(SEPARATOR);
+                escape(builder, value[i]);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public String[] decode(String raw) {
+            List<String> elements = split(raw);
+            return elements.toArray(new String[0]);
+        }
+    };
+
+    private SettingsCodecs() {}
+
+    /**
+     * Creates a codec for the constants of an enum type. Constants
+     * are stored by their name.
+     *
+     * @param type enum class
+     * @param <E> enum type
+     * @return enum codec
+     */
+    public static <E extends Enum<E>> SettingsCodec<E> enumCodec(Class<E> type) {
+        return new SettingsCodec<>() {
+            @Override
+            public Class<E> type() {
+                return type;
+            }
+
+            @Override
+            public String encode(E value) {
+                return value.name();
+            }
+
+            @Override
+            public E decode(String raw) {
+                return Enum.valueOf(type, raw.trim());
+            }
+        };
+    }
+
+    /**
+     * Creates a codec for unmodifiable lists, storing each element
+     * with the specified element codec.
+     *
+     * @param elementCodec codec for the list elements
+     * @param <E> element type
+     * @return list codec
+     */
+    public static <E> SettingsCodec<List<E>> listOf(SettingsCodec<E> elementCodec) {
+        return new SettingsCodec<>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public Class<List<E>> type() {
+                return (Class<List<E>>) (Class<?>) List.class;
+            }
+
+            @Override
+            public String encode(List<E> value) {
+                if (value.size() == 1) {
+                    String element = elementCodec.encode(value.get(0));
+                    if (element.isEmpty())
+                        return String.valueOf(ESCAPE);
+                }
+
+                StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < value.size(); i++) {
+                    if (i > 0)
+                        builder.append(SEPARATOR);
+                    escape(builder, elementCodec.encode(value.get(i)));
+                }
+                return builder.toString();
+            }
+
+            @Override
+            public List<E> decode(String raw) {
+                List<String> elements = split(raw);
+                ArrayList<E> out = new ArrayList<>(elements.size());
+                for (String element : elements)
+                    out.add(elementCodec.decode(element));
+                return Collections.unmodifiableList(out);
+            }
+        };
+    }
+
+    /**
+     * Creates a codec for float vectors, such as the vector types of
+     * the Cerberus-Math library. The vector is stored as a comma
+     * separated list of its components.
+     *
+     * @param type vector class
+     * @param components amount of components of the vector
+     * @param factory creates a vector from its components
+     * @param extractor returns the components of a vector
+     * @param <T> vector type
+     * @return vector codec
+     */
+    public static <T> SettingsCodec<T> vector(Class<T> type, int components, Function<float[], T> factory,
+                                              Function<T, float[]> extractor) {
+        return new SettingsCodec<>() {
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public String encode(T value) {
+                return FLOAT_ARRAY.encode(extractor.apply(value));
+            }
+
+            @Override
+            public T decode(String raw) {
+                int count = count(raw);
+                if (count != components)
+                    throw new IllegalArgumentException("Expected " + components + " components for " +
+                            type.getSimpleName() + " but found " + count + "!");
+                return factory.apply(parseFloats(raw, count));
+            }
+        };
+    }
+
+    private static <T> SettingsCodec<T> scalar(Class<T> type, Function<String, T> parser) {
+        return new SettingsCodec<>() {
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public String encode(T value) {
+                return value.toString();
+            }
+
+            @Override
+            public T decode(String raw) {
+                return parser.apply(raw);
+            }
+        };
+    }
+
+    private static float[] parseFloats(String raw, int count) {
+        float[] out = new float[count];
+        int begin = 0;
+        for (int i = 0; i < out.length; i++) {
+            int end = next(raw, begin);
+            out[i] = parseFloat(raw, begin, end);
+            begin = end + 1;
+        }
+        return out;
+    }
+
+    /**
+     * Parses a double from a range of a string. Decimals with up to 15
+     * significant digits and an exponent of at most 22 are computed
+     * exactly from their digits, everything else is handed to
+     * {@link Double#parseDouble(String)}.
+     */
+    private static double parseDouble(String raw, int begin, int end) {
+        begin = skip(raw, begin, end);
+        end = trim(raw, begin, end);
+        long[] decimal = decimal(raw, begin, end, 15);
+        if (decimal == null || Math.abs(decimal[1]) >= DOUBLE_POWERS.length)
+            return Double.parseDouble(raw.substring(begin, end));
+
+        double value = decimal[1] < 0 ? decimal[0] / DOUBLE_POWERS[(int) -decimal[1]]
+                : decimal[0] * DOUBLE_POWERS[(int) decimal[1]];
+        return decimal[2] != 0 ? -value : value;
+    }
+
+    /**
+     * Parses a float from a range of a string. Decimals with up to 7
+     * significant digits and an exponent of at most 10 are computed
+     * exactly from their digits, everything else is handed to
+     * {@link Float#parseFloat(String)}.
+     */
+    private static float parseFloat(String raw, int begin, int end) {
+        begin = skip(raw, begin, end);
+        end = trim(raw, begin, end);
+        long[] decimal = decimal(raw, begin, end, 7);
+        if (decimal == null || Math.abs(decimal[1]) >= FLOAT_POWERS.length)
+            return Float.parseFloat(raw.substring(begin, end));
+
+        float value = decimal[1] < 0 ? decimal[0] / FLOAT_POWERS[(int) -decimal[1]]
+                : decimal[0] * FLOAT_POWERS[(int) decimal[1]];
+        return decimal[2] != 0 ? -value : value;
+    }
+
+    /**
+     * Splits a decimal such as {@code -12.5E3} into its digits, its
+     * power of ten and its sign.
+     *
+     * @return digits, exponent and 1 for negative values, or null if the
+     *      range is no plain decimal or has more than {@code maxDigits}
+     *      significant digits
+     */
+    private static long[] decimal(String raw, int begin, int end, int maxDigits) {
+        int i = begin;
+        boolean negative = false;
+        if (i < end && (raw.charAt(i) == '-' || raw.charAt(i) == '+'))
+            negative = raw.charAt(i++) == '-';
+
+        long digits = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean point = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            char c = raw.charAt(i);
+            if (c == '.' && !point) {
+                point = true;
+            } else if (c >= '0' && c <= '9') {
+                any = true;
+                if (digits == 0 && c == '0') {
+                    if (point)
+                        exponent--;
+                    continue;
+                }
+                if (++significant > maxDigits)
+                    return null;
+                digits = digits * 10 + (c - '0');
+                if (point)
+                    exponent--;
+            } else {
+                break;
+            }
+        }
+        if (!any)
+            return null;
+
+        if (i < end) {
+            char c = raw.charAt(i);
+            if (c != 'e' && c != 'E' || ++i == end)
+                return null;
+            boolean negativeExponent = false;
+            if (raw.charAt(i) == '-' || raw.charAt(i) == '+')
+                negativeExponent = raw.charAt(i++) == '-';
+            if (i == end || end - i > 4)
+                return null;
+            int value = 0;
+            for (; i < end; i++) {
+                c = raw.charAt(i);
+                if (c < '0' || c > '9')
+                    return null;
+                value = value * 10 + (c - '0');
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (digits == 0)
+            exponent = 0;
+        return new long[] {digits, exponent, negative ? 1 : 0};
+    }
+
+    /**
+     * Returns the amount of unescaped elements in a comma separated
+     * value. An empty string contains no elements.
+     */
+    private static int count(String raw) {
+        if (raw.isEmpty())
+            return 0;
+        int count = 1;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == ESCAPE)
+                i++;
+            else if (c == SEPARATOR)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the next separator starting at
+     * {@code begin}, or the length of the string.
+     */
+    private static int next(String raw, int begin) {
+        int end = raw.indexOf(SEPARATOR, begin);
+        return end < 0 ? raw.length() : end;
+    }
+
+    private static int skip(String raw, int begin, int end) {
+        while (begin < end && Character.isWhitespace(raw.charAt(begin)))
+            begin++;
+        return begin;
+    }
+
+    private static int trim(String raw, int begin, int end) {
+        while (end > begin && Character.isWhitespace(raw.charAt(end - 1)))
+            end--;
+        return end;
+    }
+
+    private static void escape(StringBuilder builder, String element) {
+        for (int i = 0; i < element.length(); i++) {
+            char c = element.charAt(i);
+            if (c == SEPARATOR || c == ESCAPE)
+                builder.append(ESCAPE);
+            builder.append(c);
+        }
+    }
+
+    private static List<String> split(String raw) {
+        ArrayList<String> out = new ArrayList<>(count(raw));
+        if (raw.isEmpty())
+            return out;
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == ESCAPE) {
+                // A trailing escape marks a single empty element and adds nothing
+                if (i + 1 < raw.length())
+                    builder.append(raw.charAt(++i));
+            } else if (c == SEPARATOR) {
+                out.add(builder.toString());
+                builder.setLength(0);
+            } else
+                builder.append(c);
+        }
+        out.add(builder.toString());
+        return out;
+    }
+}
@@ -25,29 +25,48 @@ package com.cerberustek.settings.impl;
 
 import com.cerberustek.CerberusRegistry;
 import com.cerberustek.settings.Settings;
+import com.cerberustek.settings.SettingsCodec;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SettingsImpl implements Settings {
 
     private final File file;
-    private final Properties properties;
+    private final SettingsStore store;
     private final boolean xml;
 
+    /** Codecs for structured values, by value class */
+    private final ConcurrentHashMap<Class<?>, SettingsCodec<?>> codecs = new ConcurrentHashMap<>();
+    /** Decoded structured values, by tag */
+    private final ConcurrentHashMap<String, CachedObject> objectCache = new ConcurrentHashMap<>();
+
     public SettingsImpl(File file, boolean xml) {
         this.file = file;
-        this.properties = new Properties();
+        this.store = new SettingsStore();
         this.xml = xml;
+
+        registerCodec(SettingsCodecs.BOOLEAN);
+        registerCodec(SettingsCodecs.INTEGER);
+        registerCodec(SettingsCodecs.LONG);
+        registerCodec(SettingsCodecs.FLOAT);
+        registerCodec(SettingsCodecs.DOUBLE);
+        registerCodec(SettingsCodecs.STRING);
+        registerCodec(SettingsCodecs.BOOLEAN_ARRAY);
+        registerCodec(SettingsCodecs.INT_ARRAY);
+        registerCodec(SettingsCodecs.LONG_ARRAY);
+        registerCodec(SettingsCodecs.FLOAT_ARRAY);
+        registerCodec(SettingsCodecs.DOUBLE_ARRAY);
+        registerCodec(SettingsCodecs.STRING_ARRAY);
     }
 
     public SettingsImpl(File file) {
-        this.file = file;
-        this.properties = new Properties();
-        this.xml = true;
+        this(file, true);
     }
 
     @Override
@@ -67,10 +86,13 @@ public class SettingsImpl implements Settings {
             createParentFile();
         } else {
             try (FileInputStream inputStream = new FileInputStream(file)) {
+                Properties properties = new Properties();
                 if (xml)
                     properties.loadFromXML(inputStream);
                 else
                     properties.load(inputStream);
+                store.putAll(properties);
+                objectCache.clear();
             } catch (IOException e) {
                 CerberusRegistry.getInstance().warning("Could not read settings file: " + e);
                 CerberusRegistry.getInstance().warning("Deleting invalid settings file...");
@@ -81,6 +103,9 @@ public class SettingsImpl implements Settings {
 
     @Override
     public void save() {
+        Properties properties = new Properties();
+        properties.putAll(store.snapshot());
+
         createParentFile();
         try (FileOutputStream outputStream = new FileOutputStream(file)) {
             if (xml)
@@ -107,23 +132,25 @@ public class SettingsImpl implements Settings {
 
     @Override
     public boolean getBoolean(String tag, boolean defaultValue) {
-        if (!properties.containsKey(tag))
-            setBoolean(tag, defaultValue);
-        return Boolean.parseBoolean(properties.getProperty(tag, Boolean.toString(defaultValue)));
+        String raw = store.get(tag);
+        if (raw == null)
+            raw = store.putIfAbsent(tag, Boolean.toString(defaultValue));
+        return Boolean.parseBoolean(raw);
     }
 
     @Override
     public void setBoolean(String tag, boolean value) {
-        properties.setProperty(tag, Boolean.toString(value));
+        store.put(tag, Boolean.toString(value));
     }
 
     @Override
     public byte getSignedByte(String tag, byte defaultValue) {
-        if (!properties.containsKey(tag))
-            setByte(tag, defaultValue);
+        String raw = store.get(tag);
+        if (raw == null)
+            raw = store.putIfAbsent(tag, Byte.toString(defaultValue));
 
         try {
-            return Byte.parseByte(properties.getProperty(tag, Byte.toString(defaultValue)));
+            return Byte.parseByte(raw);
         } catch (NumberFormatException e) {
             CerberusRegistry.getInstance().warning("String found in settings where byte was expected! " + tag);
             return defaultValue;
@@ -137,16 +164,17 @@ public class SettingsImpl implements Settings {
 
     @Override
     public void setByte(String tag, int value) {
-        properties.setProperty(tag, Byte.toString((byte) (value & 0xFF)));
+        store.put(tag, Byte.toString((byte) (value & 0xFF)));
     }
 
     @Override
     public short getSignedShort(String tag, short defaultValue) {
-        if (!properties.containsKey(tag))
-            setShort(tag, defaultValue);
+        String raw = store.get(tag);
+        if (raw == null)
+            raw = store.putIfAbsent(tag, Short.toString(defaultValue));
 
         try {
-            return Short.parseShort(properties.getProperty(tag, Short.toString(defaultValue)));
+            return Short.parseShort(raw);
         } catch (NumberFormatException e) {
             CerberusRegistry.getInstance().warning("String found in settings where short was expected! " + tag);
             return defaultValue;
@@ -160,29 +188,31 @@ public class SettingsImpl implements Settings {
 
     @Override
     public void setShort(String tag, int value) {
-        properties.setProperty(tag, Short.toString((short) (value & 0xFFFF)));
+        store.put(tag, Short.toString((short) (value & 0xFFFF)));
     }
 
     @Override
     public char getCharacter(String tag, char defaultValue) {
-        if (!properties.containsKey(tag))
-            setCharacter(tag, defaultValue);
+        String raw = store.get(tag);
+        if (raw == null)
+            raw = store.putIfAbsent(tag, Character.toString(defaultValue));
 
-        return properties.getProperty(tag, Character.toString(defaultValue)).charAt(0);
+        return raw.isEmpty() ? defaultValue : raw.charAt(0);
     }
 
     @Override
     public void setCharacter(String tag, char value) {
-        properties.setProperty(tag, Character.toString(value));
+        store.put(tag, Character.toString(value));
     }
 
     @Override
     public int getInteger(String tag, int defaultValue) {
-        if (!properties.containsKey(tag))
-            setInteger(tag, defaultValue);
+        String raw = store.get(tag);
+        if (raw == null)
+            raw = store.putIfAbsent(tag, Integer.toString(defaultValue));
 
         try {
-            return Integer.parseInt(properties.getProperty(tag, Integer.toString(defaultValue)));
+            return Integer.parseInt(raw);
         } catch (NumberFormatException e) {
             CerberusRegistry.getInstance().warning("String found in settings where integer was expected! " + tag);
             return defaultValue;
@@ -196,16 +226,17 @@ public class SettingsImpl implements Settings {
 
     @Override
     public void setInteger(String tag, int value) {
-        properties.setProperty(tag, Integer.toString(value));
+        store.put(tag, Integer.toString(value));
     }
 
     @Override
     public long getLong(String tag, long defaultValue) {
-        if (!properties.containsKey(tag))
-            setLong(tag, defaultValue);
+        String raw = store.get(tag);
+        if (raw == null)
+            raw = store.putIfAbsent(tag, Long.toString(defaultValue));
 
         try {
-            return Long.parseLong(properties.getProperty(tag, Long.toString(defaultValue)));
+            return Long.parseLong(raw);
         } catch (NumberFormatException e) {
             CerberusRegistry.getInstance().warning("String found in settings where long was expected! " + tag);
             return defaultValue;
@@ -214,16 +245,17 @@ public class SettingsImpl implements Settings {
 
     @Override
     public void setLong(String tag, long value) {
-        properties.setProperty(tag, Long.toString(value));
+        store.put(tag, Long.toString(value));
     }
 
     @Override
     public float getFloat(String tag, float defaultValue) {
-        if (!properties.containsKey(tag))
-            setFloat(tag, defaultValue);
+        String raw = store.get(tag);
+        if (raw == null)
+            raw = store.putIfAbsent(tag, Float.toString(defaultValue));
 
         try {
-            return Float.parseFloat(properties.getProperty(tag, Float.toString(defaultValue)));
+            return Float.parseFloat(raw);
         } catch (NumberFormatException e) {
             CerberusRegistry.getInstance().warning("String found in settings where float was expected! " + tag);
             return defaultValue;
@@ -232,16 +264,17 @@ public class SettingsImpl implements Settings {
 
     @Override
     public void setFloat(String tag, float value) {
-        properties.setProperty(tag, Float.toString(value));
+        store.put(tag, Float.toString(value));
     }
 
     @Override
     public double getDouble(String tag, double defaultValue) {
-        if (!properties.containsKey(tag))
-            setDouble(tag, defaultValue);
+        String raw = store.get(tag);
+        if (raw == null)
+            raw = store.putIfAbsent(tag, Double.toString(defaultValue));
 
         try {
-            return Double.parseDouble(properties.getProperty(tag, Double.toString(defaultValue)));
+            return Double.parseDouble(raw);
         } catch (NumberFormatException e) {
             CerberusRegistry.getInstance().warning("String found in settings where double was expected! " + tag);
             return defaultValue;
@@ -250,31 +283,144 @@ public class SettingsImpl implements Settings {
 
     @Override
     public void setDouble(String tag, double value) {
-        properties.setProperty(tag, Double.toString(value));
+        store.put(tag, Double.toString(value));
     }
 
     @Override
     public String getString(String tag, String defaultValue) {
-        if (!properties.containsKey(tag))
-            setString(tag, defaultValue);
-
-        return properties.getProperty(tag, defaultValue);
+        String raw = store.get(tag);
+        if (raw == null && defaultValue != null)
+            raw = store.putIfAbsent(tag, defaultValue);
+        return raw != null ? raw : defaultValue;
     }
 
     @Override
     public void setString(String tag, String value) {
-        properties.setProperty(tag, value);
+        store.put(tag, value);
     }
 
     @Override
     public Object getObject(String tag, Object defaultValue) {
-        return properties.getOrDefault(tag, defaultValue);
+        if (defaultValue == null)
+            return store.get(tag);
+
+        SettingsCodec<Object> codec = codecFor(typeOf(defaultValue));
+        if (codec == null) {
+            String raw = store.get(tag);
+            return raw != null ? raw : defaultValue;
+        }
+        return getObject(tag, codec, defaultValue);
     }
 
     @Override
     public void setObject(String tag, Object value) {
-        properties.getOrDefault(tag, value);
+        if (value == null) {
+            setObject(tag, SettingsCodecs.STRING, null);
+            return;
+        }
+
+        SettingsCodec<Object> codec = codecFor(typeOf(value));
+        if (codec == null)
+            setString(tag, value.toString());
+        else
+            setObject(tag, codec, value);
     }
 
+    @Override
+    public <T> T getObject(String tag, Class<T> type, T defaultValue) {
+        SettingsCodec<T> codec = codecFor(type);
+        if (codec == null)
+            throw new IllegalArgumentException("No settings codec registered for " + type.getName() + "!");
+        return getObject(tag, codec, defaultValue);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T getObject(String tag, SettingsCodec<T> codec, T defaultValue) {
+        String raw = store.get(tag);
+        if (raw == null) {
+            if (defaultValue == null)
+                return null;
+
+            String encoded = codec.encode(defaultValue);
+            raw = store.putIfAbsent(tag, encoded);
+            if (raw == encoded) {
+                objectCache.put(tag, new CachedObject(raw, codec, defaultValue));
+                return defaultValue;
+            }
+        }
+
+        // The raw string is replaced on every change of the tag, so an
+        // identical reference means that the cached value is still valid
+        CachedObject cached = objectCache.get(tag);
+        if (cached != null && cached.raw == raw && cached.codec == codec)
+            return (T) cached.value;
+
+        try {
+            T value = codec.decode(raw);
+            objectCache.put(tag, new CachedObject(raw, codec, value));
+            return value;
+        } catch (IllegalArgumentException e) {
+            CerberusRegistry.getInstance().warning("String found in settings where " +
+                    codec.type().getSimpleName() + " was expected! " + tag);
+            return defaultValue;
+        }
+    }
 
+    @Override
+    public <T> void setObject(String tag, SettingsCodec<T> codec, T value) {
+        if (value == null) {
+            store.remove(tag);
+            objectCache.remove(tag);
+            return;
+        }
+
+        String raw = codec.encode(value);
+        store.put(tag, raw);
+        objectCache.put(tag, new CachedObject(raw, codec, value));
+    }
+
+    @Override
+    public Map<String, String> snapshot() {
+        return store.snapshot();
+    }
+
+    @Override
+    public void registerCodec(SettingsCodec<?> codec) {
+        codecs.put(codec.type(), codec);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> SettingsCodec<T> codecFor(Class<T> type) {
+        SettingsCodec<?> codec = codecs.get(type);
+        if (codec == null && type.isEnum()) {
+            codec = SettingsCodecs.enumCodec((Class) type);
+            codecs.put(type, codec);
+        }
+        return (SettingsCodec<T>) codec;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Object> typeOf(Object value) {
+        if (value instanceof Enum)
+            return (Class<Object>) (Class<?>) ((Enum<?>) value).getDeclaringClass();
+        return (Class<Object>) value.getClass();
+    }
+
+    /**
+     * Decoded value of a tag, together with the raw string and the
+     * codec it was decoded from.
+     */
+    private static class CachedObject {
+
+        private final String raw;
+        private final SettingsCodec<?> codec;
+        private final Object value;
+
+        private CachedObject(String raw, SettingsCodec<?> codec, Object value) {
+            this.raw = raw;
+            this.codec = codec;
+            this.value = value;
+        }
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.settings.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe key-value store backing the settings.
+ *
+ * Reads never lock. Writes only lock the hash bin of their key, so
+ * writers on different keys do not contend with each other. Writers
+ * share the read side of a snapshot lock, which is taken exclusively
+ * only while a point-in-time snapshot is copied. Snapshots are cached
+ * until the next write, so repeated saves or iterations without
+ * changes in between do not copy the store again.
+ */
+public class SettingsStore {
+
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    /** Last snapshot, or null if the store was modified since */
+    private volatile Map<String, String> snapshot;
+
+    /**
+     * Returns the value stored for the key.
+     *
+     * @param key key
+     * @return value, or null if there is none
+     */
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Stores a value for the key.
+     *
+     * @param key key
+     * @param value value
+     * @return the previous value, or null if there was none
+     */
+    public String put(String key, String value) {
+        snapshotLock.readLock().lock();
+        try {
+            snapshot = null;
+            return values.put(key, value);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Atomically stores a value for the key, in case there is no
+     * value stored for it yet.
+     *
+     * @param key key
+     * @param value value to store if absent
+     * @return the value stored for the key after this call
+     */
+    public String putIfAbsent(String key, String value) {
+        snapshotLock.readLock().lock();
+        try {
+            String previous = values.putIfAbsent(key, value);
+            if (previous != null)
+                return previous;
+            snapshot = null;
+            return value;
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    public String remove(String key) {
+        snapshotLock.readLock().lock();
+        try {
+            snapshot = null;
+            return values.remove(key);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores all entries of the map. Keys and values are converted
+     * to strings.
+     *
+     * @param map entries to store
+     */
+    public void putAll(Map<?, ?> map) {
+        snapshotLock.readLock().lock();
+        try {
+            snapshot = null;
+            for (Map.Entry<?, ?> entry : map.entrySet())
+                values.put(entry.getKey().toString(), entry.getValue().toString());
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns an immutable copy of the store at a single point in
+     * time. Readers are not blocked while the copy is taken.
+     *
+     * @return snapshot of all entries
+     */
+    public Map<String, String> snapshot() {
+        Map<String, String> current = snapshot;
+        if (current != null)
+            return current;
+
+        snapshotLock.writeLock().lock();
+        try {
+            current = snapshot;
+            if (current == null) {
+                current = Collections.unmodifiableMap(new HashMap<>(values));
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.usr;
+
+import com.cerberustek.Destroyable;
+import com.cerberustek.Initable;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Persistent storage for users and permission groups.
+ *
+ * All groups are held in memory. Users are loaded on demand and only a
+ * limited set of recently used users is kept in memory, so callers
+ * should look users up again instead of holding on to them.
+ */
+public interface UserStore extends Initable, Destroyable {
+
+    /**
+     * Returns a user.
+     *
+     * @param uuid user id
+     * @return user or null, if the user does not exist
+     */
+    User getUser(UUID uuid);
+
+    /**
+     * Creates and stores a new user.
+     *
+     * @param uuid user id
+     * @param locale locale of the user
+     * @param group permission group or null
+     * @return new user
+     * @throws IllegalArgumentException if the user already exists
+     */
+    User createUser(UUID uuid, Locale locale, PermissionGroup group);
+
+    boolean containsUser(UUID uuid);
+    boolean deleteUser(UUID uuid);
+    int getUserCount();
+
+    PermissionGroup getGroup(UUID groupId);
+    PermissionGroup getGroup(String name);
+    Collection<PermissionGroup> getGroups();
+
+    /**
+     * Creates and stores a new permission group.
+     *
+     * @param groupId group id
+     * @param name unique group name
+     * @return new group
+     * @throws IllegalArgumentException if the id or name is already in use
+     */
+    PermissionGroup createGroup(UUID groupId, String name);
+
+    /**
+     * Deletes a permission group. Users and groups referring to the
+     * group lose it as group or parent.
+     *
+     * @param groupId group id
+     * @return true if the group existed
+     */
+    boolean deleteGroup(UUID groupId);
+
+    /**
+     * Writes all changed users and groups to the storage.
+     */
+    void save();
+}
@@ -0,0 +1,287 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.usr.impl;
+
+import com.cerberustek.usr.PermissionGroup;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Permission group with multiple inheritance.
+ *
+ * The rules of a group and all of its ancestors are flattened into a
+ * single {@link PermissionTrie}, so a permission check costs one trie
+ * lookup no matter how deep the group hierarchy is. Rules of a group
+ * take precedence over inherited rules: an own rule for a node replaces
+ * the inherited rule for that node, and an own wildcard replaces all
+ * inherited rules below its node. If parents disagree on the same node,
+ * the denial wins.
+ *
+ * The flattened rules are computed on the first check and dropped again
+ * when the group or one of its ancestors changes. Only the changed group
+ * and its descendants are affected by such a change.
+ */
+public class PermissionGroupImpl implements PermissionGroup {
+
+    /** Guards changes of the group hierarchy, so that no cycles can be formed concurrently */
+    private static final Object HIERARCHY_LOCK = new Object();
+
+    private final UUID groupId;
+    private final String name;
+    private final PermissionTrie rules;
+    private final CopyOnWriteArrayList<PermissionGroupImpl> parents = new CopyOnWriteArrayList<>();
+    /** Direct descendants, notified when the flattened rules change */
+    private final Set<PermissionGroupImpl> children = ConcurrentHashMap.newKeySet();
+
+    private volatile Effective effective;
+    private volatile long version;
+    private volatile long revision;
+
+    public PermissionGroupImpl(UUID groupId, String name) {
+        this(groupId, name, Map.of());
+    }
+
+    /**
+     * Creates a group with the specified own rules.
+     *
+     * @param groupId group id
+     * @param name group name
+     * @param rules own rules, mapping each permission node to true if
+     *              it is granted and false if it is denied
+     */
+    public PermissionGroupImpl(UUID groupId, String name, Map<String, Boolean> rules) {
+        this.groupId = groupId;
+        this.name = name;
+        this.rules = new PermissionTrie(rules);
+    }
+
+    @Override
+    public boolean hasPermission(String permission) {
+        return effective().trie.resolve(permission) == PermissionTrie.GRANTED;
+    }
+
+    @Override
+    public void grad(String permission) {
+        rules.grant(permission);
+        invalidate();
+    }
+
+    @Override
+    public void deny(String permission) {
+        rules.deny(permission);
+        invalidate();
+    }
+
+    @Override
+    public void reset(String permission) {
+        rules.reset(permission);
+        invalidate();
+    }
+
+    @Override
+    public Collection<PermissionGroup> parents() {
+        return Collections.unmodifiableList(parents);
+    }
+
+    /**
+     * Adds a parent to this group.
+     *
+     * @param parent parent group
+     * @throws IllegalArgumentException if the parent is not a
+     *      {@code PermissionGroupImpl}, or if this group is the parent
+     *      itself or one of its ancestors
+     */
+    @Override
+    public void addParent(PermissionGroup parent) {
+        if (!(parent instanceof PermissionGroupImpl))
+            throw new IllegalArgumentException("Unsupported permission group: " + parent);
+
+        PermissionGroupImpl group = (PermissionGroupImpl) parent;
+        synchronized (HIERARCHY_LOCK) {
+            if (group == this || group.hasAncestor(this))
+                throw new IllegalArgumentException("Adding " + group.getName() + " as parent of " + name +
+                        " would create a cycle!");
+            if (parents.addIfAbsent(group))
+                group.children.add(this);
+        }
+        invalidate();
+    }
+
+    /**
+     * Removes a parent from this group.
+     *
+     * @param parent parent group
+     */
+    public void removeParent(PermissionGroup parent) {
+        synchronized (HIERARCHY_LOCK) {
+            if (!parents.remove(parent))
+                return;
+            ((PermissionGroupImpl) parent).children.remove(this);
+        }
+        invalidate();
+    }
+
+    @Override
+    public boolean hasParent(PermissionGroup parent) {
+        return parents.contains(parent);
+    }
+
+    /**
+     * Returns rather the group is a direct or indirect parent of this
+     * group.
+     *
+     * @param group group
+     * @return is an ancestor?
+     */
+    public boolean hasAncestor(PermissionGroup group) {
+        for (PermissionGroupImpl parent : parents) {
+            if (parent == group || parent.hasAncestor(group))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public UUID getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * Returns the own rules of this group, without inherited rules.
+     *
+     * @return rules
+     */
+    public Map<String, Boolean> rules() {
+        return rules.rules();
+    }
+
+    /**
+     * Returns a counter that changes whenever the flattened rules of
+     * this group change.
+     *
+     * @return version
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Returns the flattened rules of this group and its ancestors.
+     *
+     * @return flattened rules
+     */
+    PermissionTrie effectiveTrie() {
+        return effective().trie;
+    }
+
+    private Effective effective() {
+        Effective current = effective;
+        if (current != null)
+            return current;
+
+        long startVersion = version;
+        LinkedHashMap<String, Boolean> merged = new LinkedHashMap<>();
+        for (PermissionGroupImpl parent : parents) {
+            for (Map.Entry<String, Boolean> rule : parent.effective().rules.entrySet())
+                merged.merge(rule.getKey(), rule.getValue(), Boolean::logicalAnd);
+        }
+        layer(merged, rules.rules());
+        current = new Effective(merged);
+
+        synchronized (this) {
+            // Do not publish rules that have been invalidated in the meantime
+            if (version == startVersion)
+                effective = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns a counter that changes whenever the own rules or the
+     * parents of this group change.
+     *
+     * @return revision
+     */
+    long revision() {
+        return revision;
+    }
+
+    private void invalidate() {
+        synchronized (this) {
+            revision++;
+        }
+        invalidateEffective();
+    }
+
+    private void invalidateEffective() {
+        synchronized (this) {
+            effective = null;
+            version++;
+        }
+        for (PermissionGroupImpl child : children)
+            child.invalidateEffective();
+    }
+
+    /**
+     * Puts own rules on top of inherited rules. Own wildcards remove all
+     * inherited rules for their node and below it first.
+     *
+     * @param inherited inherited rules, modified in place
+     * @param own own rules
+     */
+    static void layer(Map<String, Boolean> inherited, Map<String, Boolean> own) {
+        for (String permission : own.keySet()) {
+            if (permission.equals("*")) {
+                inherited.clear();
+            } else if (permission.endsWith(".*")) {
+                // The wildcard covers its node itself and everything below it
+                String node = permission.substring(0, permission.length() - 2);
+                String prefix = permission.substring(0, permission.length() - 1);
+                inherited.keySet().removeIf(key -> key.equals(node) || key.startsWith(prefix));
+            }
+        }
+        inherited.putAll(own);
+    }
+
+    /**
+     * Flattened rules of a group, together with their compiled trie.
+     */
+    private static class Effective {
+
+        private final Map<String, Boolean> rules;
+        private final PermissionTrie trie;
+
+        private Effective(Map<String, Boolean> rules) {
+            this.rules = rules;
+            this.trie = new PermissionTrie(rules);
+        }
+    }
+}
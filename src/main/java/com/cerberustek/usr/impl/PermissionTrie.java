@@ -0,0 +1,259 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.usr.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled tree of permission rules over dotted permission nodes.
+ *
+ * A rule either grants or denies a permission node, such as
+ * {@code de.cerberus.registry.stop}, or a node and all nodes below it,
+ * written as {@code de.cerberus.registry.*}. The wildcard therefore also
+ * applies to {@code de.cerberus.registry} itself. The rule {@code *}
+ * applies to all nodes. When resolving a permission, the most specific
+ * rule wins: a rule for the exact node beats any wildcard, and a
+ * wildcard on a deeper node beats one on a shallower node.
+ *
+ * Rules are compiled into an immutable tree whenever they change, so
+ * lookups neither lock nor allocate, and walk the permission string
+ * segment by segment without splitting it.
+ */
+public class PermissionTrie {
+
+    public static final byte DENIED = -1;
+    public static final byte UNDEFINED = 0;
+    public static final byte GRANTED = 1;
+
+    private static final String WILDCARD = "*";
+
+    /** Rules in the order they were set, true for granted */
+    private final LinkedHashMap<String, Boolean> rules = new LinkedHashMap<>();
+    private volatile Node root = Node.EMPTY;
+
+    public PermissionTrie() {}
+
+    /**
+     * Creates a trie with the specified rules.
+     *
+     * @param rules rules, mapping each permission node to true if it
+     *              is granted and false if it is denied
+     * @throws IllegalArgumentException if a rule contains a wildcard
+     *      that is not its last segment
+     */
+    public PermissionTrie(Map<String, Boolean> rules) {
+        for (String permission : rules.keySet())
+            validate(permission);
+        this.rules.putAll(rules);
+        compile();
+    }
+
+    /**
+     * Grants a permission node.
+     *
+     * @param permission permission node
+     * @throws IllegalArgumentException if the node contains a wildcard
+     *      that is not its last segment
+     */
+    public synchronized void grant(String permission) {
+        validate(permission);
+        rules.put(permission, true);
+        compile();
+    }
+
+    /**
+     * Denies a permission node.
+     *
+     * @param permission permission node
+     * @throws IllegalArgumentException if the node contains a wildcard
+     *      that is not its last segment
+     */
+    public synchronized void deny(String permission) {
+        validate(permission);
+        rules.put(permission, false);
+        compile();
+    }
+
+    public synchronized void reset(String permission) {
+        if (rules.remove(permission) != null)
+            compile();
+    }
+
+    public synchronized boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Returns a copy of all rules, mapping each permission node to
+     * true if it is granted and false if it is denied.
+     *
+     * @return rules
+     */
+    public synchronized Map<String, Boolean> rules() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(rules));
+    }
+
+    /**
+     * Resolves a permission against the rules.
+     *
+     * @param permission permission node
+     * @return {@link #GRANTED}, {@link #DENIED} or {@link #UNDEFINED}
+     *      if no rule applies to the permission
+     */
+    public byte resolve(String permission) {
+        Node node = root;
+        byte inherited = UNDEFINED;
+        int length = permission.length();
+        int start = 0;
+
+        while (true) {
+            int end = permission.indexOf('.', start);
+            if (end < 0)
+                end = length;
+
+            // A wildcard on this node applies to everything below it
+            if (node.wildcard != UNDEFINED)
+                inherited = node.wildcard;
+            node = node.child(permission, start, end);
+            if (node == null)
+                return inherited;
+            if (end == length) {
+                if (node.state != UNDEFINED)
+                    return node.state;
+                return node.wildcard != UNDEFINED ? node.wildcard : inherited;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Rejects wildcards in the middle of a node. They would otherwise
+     * apply to everything below the segment before them, such as
+     * {@code de.*.stop} to all of {@code de}.
+     */
+    private static void validate(String permission) {
+        int start = 0;
+        int end;
+        while ((end = permission.indexOf('.', start)) >= 0) {
+            if (end - start == 1 && permission.charAt(start) == '*')
+                throw new IllegalArgumentException("Wildcards are only allowed as last segment: " + permission);
+            start = end + 1;
+        }
+    }
+
+    private void compile() {
+        Builder builder = new Builder();
+        for (Map.Entry<String, Boolean> rule : rules.entrySet())
+            builder.add(rule.getKey(), rule.getValue() ? GRANTED : DENIED);
+        root = builder.build();
+    }
+
+    /**
+     * Immutable node of the compiled tree.
+     */
+    private static final class Node {
+
+        private static final Node EMPTY = new Node(new String[0], new int[0], new Node[0], UNDEFINED, UNDEFINED);
+
+        private final String[] names;
+        private final int[] hashes;
+        private final Node[] children;
+        /** Rule for exactly this node */
+        private final byte state;
+        /** Rule for all nodes below this node */
+        private final byte wildcard;
+
+        private Node(String[] names, int[] hashes, Node[] children, byte state, byte wildcard) {
+            this.names = names;
+            this.hashes = hashes;
+            this.children = children;
+            this.state = state;
+            this.wildcard = wildcard;
+        }
+
+        /**
+         * Returns the child named like the region of the permission,
+         * without creating a sub-string of the region.
+         */
+        private Node child(String permission, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++)
+                hash = 31 * hash + permission.charAt(i);
+
+            int length = end - start;
+            for (int i = 0; i < names.length; i++) {
+                if (hashes[i] == hash && names[i].length() == length &&
+                        permission.regionMatches(start, names[i], 0, length))
+                    return children[i];
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Mutable node used while compiling the rules.
+     */
+    private static final class Builder {
+
+        private final HashMap<String, Builder> children = new HashMap<>();
+        private byte state = UNDEFINED;
+        private byte wildcard = UNDEFINED;
+
+        private void add(String permission, byte value) {
+            Builder node = this;
+            int start = 0;
+            while (true) {
+                int end = permission.indexOf('.', start);
+                String segment = permission.substring(start, end < 0 ? permission.length() : end);
+                if (segment.equals(WILDCARD)) {
+                    node.wildcard = value;
+                    return;
+                }
+
+                node = node.children.computeIfAbsent(segment, k -> new Builder());
+                if (end < 0) {
+                    node.state = value;
+                    return;
+                }
+                start = end + 1;
+            }
+        }
+
+        private Node build() {
+            ArrayList<String> names = new ArrayList<>(children.keySet());
+            String[] nameArray = names.toArray(new String[0]);
+            int[] hashes = new int[nameArray.length];
+            Node[] nodes = new Node[nameArray.length];
+            for (int i = 0; i < nameArray.length; i++) {
+                hashes[i] = nameArray[i].hashCode();
+                nodes[i] = children.get(nameArray[i]).build();
+            }
+            return new Node(nameArray, hashes, nodes, state, wildcard);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.usr.impl;
+
+import com.cerberustek.service.impl.MainService;
+import com.cerberustek.usr.PermissionHolder;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Permission holder backed by a {@link PermissionTrie}.
+ *
+ * The results for a small set of frequently checked permissions are
+ * kept in a bitset, which is recomputed whenever a rule changes. Checks
+ * of those permissions, passed as the same string constants, only
+ * compare references and test a bit. By default, the fast path covers
+ * the permissions of the {@link MainService}.
+ */
+public class SimplePermissionHolder implements PermissionHolder {
+
+    /** At most 64 permissions fit into the bitset */
+    private static final int MAX_FAST_PATH = 64;
+
+    private final PermissionTrie trie = new PermissionTrie();
+    private final String[] fastPath;
+    /** Bit i is set, if the permission fastPath[i] is granted */
+    private volatile long granted;
+
+    public SimplePermissionHolder() {
+        this(MainService.PERMISSIONS);
+    }
+
+    /**
+     * Creates a permission holder without any permissions.
+     *
+     * @param fastPath permissions to keep in the bitset
+     */
+    public SimplePermissionHolder(Collection<String> fastPath) {
+        if (fastPath.size() > MAX_FAST_PATH)
+            throw new IllegalArgumentException("At most " + MAX_FAST_PATH + " fast path permissions are supported!");
+        this.fastPath = fastPath.toArray(new String[0]);
+    }
+
+    @Override
+    public boolean hasPermission(String permission) {
+        String[] fastPath = this.fastPath;
+        for (int i = 0; i < fastPath.length; i++) {
+            if (fastPath[i] == permission)
+                return (granted >>> i & 1L) != 0;
+        }
+        return trie.resolve(permission) == PermissionTrie.GRANTED;
+    }
+
+    @Override
+    public synchronized void grad(String permission) {
+        trie.grant(permission);
+        updateFastPath();
+    }
+
+    @Override
+    public synchronized void deny(String permission) {
+        trie.deny(permission);
+        updateFastPath();
+    }
+
+    @Override
+    public synchronized void reset(String permission) {
+        trie.reset(permission);
+        updateFastPath();
+    }
+
+    /**
+     * Returns a copy of the rules of this holder, mapping each
+     * permission node to true if it is granted and false if it is
+     * denied. Rules are changed through {@link #grad(String)},
+     * {@link #deny(String)} and {@link #reset(String)} only.
+     *
+     * @return rules
+     */
+    public Map<String, Boolean> rules() {
+        return trie.rules();
+    }
+
+    private void updateFastPath() {
+        long mask = 0;
+        for (int i = 0; i < fastPath.length; i++) {
+            if (trie.resolve(fastPath[i]) == PermissionTrie.GRANTED)
+                mask |= 1L << i;
+        }
+        granted = mask;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.usr.impl;
+
+import com.cerberustek.usr.PermissionGroup;
+import com.cerberustek.usr.User;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * User delegating to a {@link PermissionGroupImpl}.
+ *
+ * Rules of the user take precedence over the rules of its group, the
+ * same way rules of a group take precedence over inherited rules. Users
+ * without own rules share the flattened trie of their group, so a large
+ * amount of users does not cost a trie per user.
+ */
+public class UserImpl implements User {
+
+    private final UUID uuid;
+    private final PermissionTrie rules;
+
+    private volatile Locale locale;
+    private volatile PermissionGroupImpl group;
+    private volatile Effective effective;
+    private volatile long revision;
+    private volatile UserStoreImpl releasedFrom;
+
+    public UserImpl(UUID uuid, Locale locale, PermissionGroup group) {
+        this(uuid, locale, group, Map.of());
+    }
+
+    /**
+     * Creates a user with the specified own rules.
+     *
+     * @param uuid user id
+     * @param locale locale of the user
+     * @param group permission group or null
+     * @param rules own rules, mapping each permission node to true if
+     *              it is granted and false if it is denied
+     */
+    public UserImpl(UUID uuid, Locale locale, PermissionGroup group, Map<String, Boolean> rules) {
+        this.uuid = uuid;
+        this.locale = locale;
+        this.rules = new PermissionTrie(rules);
+        setPermissionGroup(group);
+        revision = 0;
+    }
+
+    @Override
+    public boolean hasPermission(String permission) {
+        return effective().trie.resolve(permission) == PermissionTrie.GRANTED;
+    }
+
+    @Override
+    public void grad(String permission) {
+        synchronized (this) {
+            rules.grant(permission);
+            effective = null;
+            revision++;
+        }
+        changed();
+    }
+
+    @Override
+    public void deny(String permission) {
+        synchronized (this) {
+            rules.deny(permission);
+            effective = null;
+            revision++;
+        }
+        changed();
+    }
+
+    @Override
+    public void reset(String permission) {
+        synchronized (this) {
+            rules.reset(permission);
+            effective = null;
+            revision++;
+        }
+        changed();
+    }
+
+    @Override
+    public UUID getUUID() {
+        return uuid;
+    }
+
+    @Override
+    public Locale getLocal() {
+        return locale;
+    }
+
+    public void setLocale(Locale locale) {
+        synchronized (this) {
+            this.locale = locale;
+            revision++;
+        }
+        changed();
+    }
+
+    @Override
+    public PermissionGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Sets the permission group of this user.
+     *
+     * @param group group or null
+     * @throws IllegalArgumentException if the group is not a
+     *      {@code PermissionGroupImpl}
+     */
+    @Override
+    public void setPermissionGroup(PermissionGroup group) {
+        if (group != null && !(group instanceof PermissionGroupImpl))
+            throw new IllegalArgumentException("Unsupported permission group: " + group);
+        synchronized (this) {
+            this.group = (PermissionGroupImpl) group;
+            effective = null;
+            revision++;
+        }
+        changed();
+    }
+
+    /**
+     * Returns the own rules of this user, without the rules of its
+     * group.
+     *
+     * @return rules
+     */
+    public Map<String, Boolean> rules() {
+        return rules.rules();
+    }
+
+    /**
+     * Returns a counter that changes whenever the own state of this
+     * user changes.
+     *
+     * @return revision
+     */
+    long revision() {
+        return revision;
+    }
+
+    /**
+     * Sets the store this user was evicted from, or null once the store
+     * holds it again. An evicted user reports its changes to the store,
+     * so they are not lost if the user is collected before it is saved.
+     *
+     * @param store store or null
+     */
+    void setReleasedFrom(UserStoreImpl store) {
+        releasedFrom = store;
+    }
+
+    private void changed() {
+        // Called without holding the lock of this user, the store locks itself first
+        UserStoreImpl store = releasedFrom;
+        if (store != null)
+            store.changed(this);
+    }
+
+    private Effective effective() {
+        Effective current = effective;
+        PermissionGroupImpl group = this.group;
+        if (current != null && current.group == group && (group == null || current.groupVersion == group.version()))
+            return current;
+        return rebuild(group);
+    }
+
+    private synchronized Effective rebuild(PermissionGroupImpl group) {
+        // Read the version first, so a concurrent change of the group can only cause another rebuild
+        long groupVersion = group == null ? 0 : group.version();
+        PermissionTrie trie;
+        if (rules.isEmpty()) {
+            trie = group == null ? rules : group.effectiveTrie();
+        } else if (group == null) {
+            trie = rules;
+        } else {
+            Map<String, Boolean> merged = new HashMap<>(group.effectiveTrie().rules());
+            PermissionGroupImpl.layer(merged, rules.rules());
+            trie = new PermissionTrie(merged);
+        }
+
+        Effective current = new Effective(group, groupVersion, trie);
+        effective = current;
+        return current;
+    }
+
+    /**
+     * Effective rules of a user, together with the group version they
+     * were computed from.
+     */
+    private static class Effective {
+
+        private final PermissionGroupImpl group;
+        private final long groupVersion;
+        private final PermissionTrie trie;
+
+        private Effective(PermissionGroupImpl group, long groupVersion, PermissionTrie trie) {
+            this.group = group;
+            this.groupVersion = groupVersion;
+            this.trie = trie;
+        }
+    }
+}
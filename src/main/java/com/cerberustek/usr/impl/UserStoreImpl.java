@@ -0,0 +1,658 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.usr.impl;
+
+import com.cerberustek.CerberusRegistry;
+import com.cerberustek.usr.PermissionGroup;
+import com.cerberustek.usr.User;
+import com.cerberustek.usr.UserStore;
+
+import java.io.*;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * User store backed by an append-only log file.
+ *
+ * Every change of a user or group appends the complete new state of that
+ * user or group to the log, deletions append a tombstone. An in-memory
+ * index maps the id of every user to the position of its latest record,
+ * and the log is compacted once most of it is made up of outdated records.
+ *
+ * At start up the log is read once, front to back. Groups are loaded
+ * completely, users are only indexed and read from the log when they are
+ * first requested. Loaded users are kept in an LRU cache of limited size;
+ * changed users are written back when they are evicted or when the store
+ * is saved. Evicted users that are still referenced somewhere are handed
+ * out again instead of being read a second time. An evicted user that is
+ * changed is held strongly until it has been written by the next save.
+ */
+public class UserStoreImpl implements UserStore {
+
+    private static final int MAGIC = 0x43525553;
+    private static final short FORMAT = 1;
+    private static final int HEADER = 6;
+
+    private static final byte GROUP = 1;
+    private static final byte USER = 2;
+    private static final byte DELETE_USER = 3;
+    private static final byte DELETE_GROUP = 4;
+
+    /** Size of type and length in front of every record */
+    private static final int RECORD_HEADER = 5;
+    /** Minimum amount of outdated bytes before the log is compacted */
+    private static final long COMPACT_THRESHOLD = 1 << 20;
+
+    private final File file;
+    private final int cacheSize;
+
+    private UuidIndex userOffsets = new UuidIndex();
+    private UuidIndex groupOffsets = new UuidIndex();
+    private final LinkedHashMap<UUID, PermissionGroupImpl> groups = new LinkedHashMap<>();
+    private final HashMap<String, PermissionGroupImpl> groupsByName = new HashMap<>();
+    private final HashMap<UUID, Long> groupRevisions = new HashMap<>();
+
+    private final LinkedHashMap<UUID, Cached> cache;
+    private final HashMap<UUID, Released> released = new HashMap<>();
+    private final ReferenceQueue<UserImpl> releaseQueue = new ReferenceQueue<>();
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(buffer);
+
+    private FileChannel channel;
+    private long end;
+    private long garbage;
+
+    /**
+     * Creates a user store.
+     *
+     * @param file log file
+     * @param cacheSize maximum amount of users held in memory
+     */
+    public UserStoreImpl(File file, int cacheSize) {
+        this.file = file;
+        this.cacheSize = cacheSize;
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Cached> eldest) {
+                if (size() <= UserStoreImpl.this.cacheSize)
+                    return false;
+                release(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public UserStoreImpl(File file) {
+        this(file, 1024);
+    }
+
+    @Override
+    public synchronized void init() {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+            CerberusRegistry.getInstance().warning("Invalid path to user store!");
+
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putShort(FORMAT).flip();
+                writeFully(header, 0);
+                end = HEADER;
+            } else
+                load();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open user store " + file + ": " + e, e);
+        }
+        CerberusRegistry.getInstance().info("Loaded " + groups.size() + " groups and indexed " +
+                userOffsets.size() + " users");
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (channel == null)
+            return;
+
+        save();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            CerberusRegistry.getInstance().warning("Could not close user store: " + e);
+        }
+        channel = null;
+        cache.clear();
+        released.clear();
+    }
+
+    @Override
+    public synchronized User getUser(UUID uuid) {
+        expunge();
+        Cached cached = cache.get(uuid);
+        if (cached != null)
+            return cached.user;
+
+        Released reference = released.remove(uuid);
+        if (reference != null) {
+            UserImpl user = reference.get();
+            if (user != null) {
+                user.setReleasedFrom(null);
+                cache.put(uuid, new Cached(user, reference.revision));
+                return user;
+            }
+        }
+
+        long offset = userOffsets.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (offset == UuidIndex.ABSENT)
+            return null;
+
+        UserImpl user = readUser(offset);
+        cache.put(uuid, new Cached(user, user.revision()));
+        return user;
+    }
+
+    @Override
+    public synchronized User createUser(UUID uuid, Locale locale, PermissionGroup group) {
+        if (containsUser(uuid))
+            throw new IllegalArgumentException("User " + uuid + " does already exist!");
+
+        UserImpl user = new UserImpl(uuid, locale, group);
+        writeUser(user);
+        cache.put(uuid, new Cached(user, user.revision()));
+        return user;
+    }
+
+    @Override
+    public synchronized boolean containsUser(UUID uuid) {
+        return userOffsets.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) != UuidIndex.ABSENT;
+    }
+
+    @Override
+    public synchronized boolean deleteUser(UUID uuid) {
+        long offset = userOffsets.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (offset == UuidIndex.ABSENT)
+            return false;
+
+        cache.remove(uuid);
+        released.remove(uuid);
+        garbage += recordSize(offset);
+        writeTombstone(DELETE_USER, uuid);
+        return true;
+    }
+
+    @Override
+    public synchronized int getUserCount() {
+        return userOffsets.size();
+    }
+
+    @Override
+    public synchronized PermissionGroup getGroup(UUID groupId) {
+        return groups.get(groupId);
+    }
+
+    @Override
+    public synchronized PermissionGroup getGroup(String name) {
+        return groupsByName.get(name);
+    }
+
+    @Override
+    public synchronized Collection<PermissionGroup> getGroups() {
+        return new ArrayList<>(groups.values());
+    }
+
+    @Override
+    public synchronized PermissionGroup createGroup(UUID groupId, String name) {
+        if (groups.containsKey(groupId))
+            throw new IllegalArgumentException("Group " + groupId + " does already exist!");
+        if (groupsByName.containsKey(name))
+            throw new IllegalArgumentException("Group name " + name + " is already in use!");
+
+        PermissionGroupImpl group = new PermissionGroupImpl(groupId, name);
+        groups.put(groupId, group);
+        groupsByName.put(name, group);
+        writeGroup(group);
+        return group;
+    }
+
+    @Override
+    public synchronized boolean deleteGroup(UUID groupId) {
+        PermissionGroupImpl group = groups.remove(groupId);
+        if (group == null)
+            return false;
+
+        groupsByName.remove(group.getName());
+        groupRevisions.remove(groupId);
+        for (PermissionGroupImpl other : groups.values())
+            other.removeParent(group);
+        for (Cached cached : cache.values()) {
+            if (cached.user.getGroup() == group)
+                cached.user.setPermissionGroup(null);
+        }
+        for (Released reference : released.values()) {
+            UserImpl user = reference.get();
+            if (user != null && user.getGroup() == group)
+                user.setPermissionGroup(null);
+        }
+
+        long offset = groupOffsets.remove(groupId.getMostSignificantBits(), groupId.getLeastSignificantBits());
+        if (offset != UuidIndex.ABSENT)
+            garbage += recordSize(offset);
+        writeTombstone(DELETE_GROUP, groupId);
+        return true;
+    }
+
+    @Override
+    public synchronized void save() {
+        expunge();
+        for (PermissionGroupImpl group : groups.values()) {
+            Long revision = groupRevisions.get(group.getGroupId());
+            if (revision == null || revision != group.revision())
+                writeGroup(group);
+        }
+        for (Cached cached : cache.values()) {
+            if (cached.revision != cached.user.revision()) {
+                cached.revision = cached.user.revision();
+                writeUser(cached.user);
+            }
+        }
+        for (Released reference : released.values()) {
+            UserImpl user = reference.get();
+            if (user != null && reference.revision != user.revision()) {
+                reference.revision = user.revision();
+                writeUser(user);
+            }
+            reference.pending = null;
+        }
+
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            CerberusRegistry.getInstance().warning("Could not flush user store: " + e);
+        }
+        if (garbage > COMPACT_THRESHOLD && garbage * 2 > end)
+            compact();
+    }
+
+    /**
+     * Rewrites the log, keeping only the latest record of every user and
+     * group.
+     */
+    public synchronized void compact() {
+        File temp = new File(file.getPath() + ".tmp");
+        UuidIndex newUsers = new UuidIndex();
+        UuidIndex newGroups = new UuidIndex();
+
+        try (FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putShort(FORMAT).flip();
+            while (header.hasRemaining())
+                target.write(header);
+
+            copyRecords(groupOffsets, newGroups, target);
+            copyRecords(userOffsets, newUsers, target);
+            target.force(false);
+        } catch (IOException e) {
+            CerberusRegistry.getInstance().warning("Could not compact user store: " + e);
+            return;
+        }
+
+        try {
+            channel.close();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            end = channel.size();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not replace user store " + file + ": " + e, e);
+        }
+        CerberusRegistry.getInstance().fine("Compacted user store, dropped " + garbage + " bytes");
+        userOffsets = newUsers;
+        groupOffsets = newGroups;
+        garbage = 0;
+    }
+
+    private void copyRecords(UuidIndex source, UuidIndex target, FileChannel out) throws IOException {
+        source.forEach((msb, lsb, offset) -> {
+            long size = recordSize(offset);
+            target.put(msb, lsb, out.position());
+            for (long copied = 0; copied < size; )
+                copied += channel.transferTo(offset + copied, size - copied, out);
+        });
+    }
+
+    /**
+     * Reads the log front to back, loading all groups and indexing all
+     * users. A record cut off by a crash is discarded.
+     */
+    private void load() throws IOException {
+        HashMap<UUID, List<UUID>> parents = new HashMap<>();
+        long position = HEADER;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath()), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT)
+                throw new IOException("Not a user store");
+
+            byte[] payload = new byte[256];
+            while (true) {
+                byte type;
+                int length;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    length = in.readInt();
+                    if (payload.length < length)
+                        payload = new byte[Math.max(length, payload.length * 2)];
+                    in.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    CerberusRegistry.getInstance().warning("Discarding incomplete record at the end of the " +
+                            "user store");
+                    channel.truncate(position);
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(payload, 0, length);
+                long msb = record.getLong();
+                long lsb = record.getLong();
+                long size = RECORD_HEADER + length;
+                switch (type) {
+                    case USER:
+                        replace(userOffsets.put(msb, lsb, position));
+                        break;
+                    case DELETE_USER:
+                        replace(userOffsets.remove(msb, lsb));
+                        garbage += size;
+                        break;
+                    case GROUP:
+                        replace(groupOffsets.put(msb, lsb, position));
+                        loadGroup(new DataInputStream(new ByteArrayInputStream(payload, 0, length)), parents);
+                        break;
+                    case DELETE_GROUP:
+                        replace(groupOffsets.remove(msb, lsb));
+                        removeGroup(new UUID(msb, lsb));
+                        parents.remove(new UUID(msb, lsb));
+                        garbage += size;
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type + " at " + position);
+                }
+                position += size;
+            }
+        }
+        end = position;
+
+        for (Map.Entry<UUID, List<UUID>> entry : parents.entrySet()) {
+            PermissionGroupImpl group = groups.get(entry.getKey());
+            for (UUID parentId : entry.getValue()) {
+                PermissionGroupImpl parent = groups.get(parentId);
+                if (parent != null)
+                    group.addParent(parent);
+            }
+        }
+        for (PermissionGroupImpl group : groups.values())
+            groupRevisions.put(group.getGroupId(), group.revision());
+    }
+
+    /**
+     * Accounts for a record that has been replaced by a newer one. Sizes
+     * of replaced records are only known while loading from their offset,
+     * so this reads the record header.
+     */
+    private void replace(long offset) throws IOException {
+        if (offset != UuidIndex.ABSENT)
+            garbage += readRecordSize(offset);
+    }
+
+    private void loadGroup(DataInputStream in, Map<UUID, List<UUID>> parents) throws IOException {
+        UUID groupId = new UUID(in.readLong(), in.readLong());
+        String name = in.readUTF();
+        int parentCount = in.readInt();
+        ArrayList<UUID> parentIds = new ArrayList<>(parentCount);
+        for (int i = 0; i < parentCount; i++)
+            parentIds.add(new UUID(in.readLong(), in.readLong()));
+        Map<String, Boolean> rules = readRules(in);
+
+        removeGroup(groupId);
+        PermissionGroupImpl group = new PermissionGroupImpl(groupId, name, rules);
+        groups.put(groupId, group);
+        groupsByName.put(name, group);
+        parents.put(groupId, parentIds);
+    }
+
+    private void removeGroup(UUID groupId) {
+        PermissionGroupImpl group = groups.remove(groupId);
+        if (group != null)
+            groupsByName.remove(group.getName());
+    }
+
+    private UserImpl readUser(long offset) {
+        try {
+            int size = (int) readRecordSize(offset);
+            ByteBuffer record = ByteBuffer.allocate(size - RECORD_HEADER);
+            readFully(record, offset + RECORD_HEADER);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()));
+            UUID uuid = new UUID(in.readLong(), in.readLong());
+            String tag = in.readUTF();
+            PermissionGroupImpl group = in.readBoolean() ? groups.get(new UUID(in.readLong(), in.readLong())) : null;
+            Map<String, Boolean> rules = readRules(in);
+            return new UserImpl(uuid, tag.isEmpty() ? null : Locale.forLanguageTag(tag), group, rules);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read user at " + offset + " from " + file + ": " + e, e);
+        }
+    }
+
+    private void writeUser(UserImpl user) {
+        try {
+            buffer.reset();
+            UUID uuid = user.getUUID();
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            Locale locale = user.getLocal();
+            out.writeUTF(locale == null ? "" : locale.toLanguageTag());
+            PermissionGroup group = user.getGroup();
+            out.writeBoolean(group != null);
+            if (group != null) {
+                out.writeLong(group.getGroupId().getMostSignificantBits());
+                out.writeLong(group.getGroupId().getLeastSignificantBits());
+            }
+            writeRules(user.rules());
+
+            long offset = append(USER);
+            replace(userOffsets.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), offset));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write user " + user.getUUID() + ": " + e, e);
+        }
+    }
+
+    private void writeGroup(PermissionGroupImpl group) {
+        try {
+            buffer.reset();
+            UUID groupId = group.getGroupId();
+            out.writeLong(groupId.getMostSignificantBits());
+            out.writeLong(groupId.getLeastSignificantBits());
+            out.writeUTF(group.getName());
+            Collection<PermissionGroup> parents = group.parents();
+            out.writeInt(parents.size());
+            for (PermissionGroup parent : parents) {
+                out.writeLong(parent.getGroupId().getMostSignificantBits());
+                out.writeLong(parent.getGroupId().getLeastSignificantBits());
+            }
+            long revision = group.revision();
+            writeRules(group.rules());
+
+            long offset = append(GROUP);
+            replace(groupOffsets.put(groupId.getMostSignificantBits(), groupId.getLeastSignificantBits(), offset));
+            groupRevisions.put(groupId, revision);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write group " + group.getName() + ": " + e, e);
+        }
+    }
+
+    private void writeTombstone(byte type, UUID uuid) {
+        try {
+            buffer.reset();
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            append(type);
+            garbage += RECORD_HEADER + 16;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not delete " + uuid + ": " + e, e);
+        }
+    }
+
+    private void writeRules(Map<String, Boolean> rules) throws IOException {
+        out.writeInt(rules.size());
+        for (Map.Entry<String, Boolean> rule : rules.entrySet()) {
+            out.writeUTF(rule.getKey());
+            out.writeBoolean(rule.getValue());
+        }
+    }
+
+    private static Map<String, Boolean> readRules(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        LinkedHashMap<String, Boolean> rules = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++)
+            rules.put(in.readUTF(), in.readBoolean());
+        return rules;
+    }
+
+    /**
+     * Appends the buffered payload as a record to the log.
+     *
+     * @param type record type
+     * @return offset of the record
+     */
+    private long append(byte type) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + buffer.size());
+        record.put(type).putInt(buffer.size()).put(buffer.toByteArray()).flip();
+
+        long offset = end;
+        writeFully(record, offset);
+        end += record.capacity();
+        return offset;
+    }
+
+    private long readRecordSize(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        readFully(header, offset);
+        return RECORD_HEADER + header.getInt(1);
+    }
+
+    private long recordSize(long offset) {
+        try {
+            return readRecordSize(offset);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read record at " + offset + " from " + file + ": " + e, e);
+        }
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position + target.position());
+            if (read < 0)
+                throw new EOFException("Unexpected end of user store at " + (position + target.position()));
+        }
+    }
+
+    private void writeFully(ByteBuffer source, long position) throws IOException {
+        while (source.hasRemaining())
+            channel.write(source, position + source.position());
+    }
+
+    /**
+     * Writes back an evicted user if it changed, and remembers it in case
+     * it is still referenced elsewhere.
+     */
+    private void release(UUID uuid, Cached cached) {
+        if (cached.revision != cached.user.revision()) {
+            cached.revision = cached.user.revision();
+            try {
+                writeUser(cached.user);
+            } catch (IllegalStateException e) {
+                CerberusRegistry.getInstance().warning(e.getMessage());
+            }
+        }
+        released.put(uuid, new Released(uuid, cached.user, cached.revision, releaseQueue));
+        cached.user.setReleasedFrom(this);
+    }
+
+    /**
+     * Holds a changed, evicted user strongly until it has been written.
+     *
+     * @param user changed user
+     */
+    synchronized void changed(UserImpl user) {
+        Released reference = released.get(user.getUUID());
+        if (reference != null && reference.get() == user && reference.revision != user.revision())
+            reference.pending = user;
+    }
+
+    private void expunge() {
+        Released reference;
+        while ((reference = (Released) releaseQueue.poll()) != null)
+            released.remove(reference.uuid, reference);
+    }
+
+    /**
+     * Cached user, together with its revision at the time it was last
+     * written.
+     */
+    private static class Cached {
+
+        private final UserImpl user;
+        private long revision;
+
+        private Cached(UserImpl user, long revision) {
+            this.user = user;
+            this.revision = revision;
+        }
+    }
+
+    /**
+     * Weak reference to an evicted user, made strong by {@code pending}
+     * while the user has unwritten changes.
+     */
+    private static class Released extends WeakReference<UserImpl> {
+
+        private final UUID uuid;
+        private long revision;
+        private UserImpl pending;
+
+        private Released(UUID uuid, UserImpl user, long revision, ReferenceQueue<UserImpl> queue) {
+            super(user, queue);
+            this.uuid = uuid;
+            this.revision = revision;
+        }
+    }
+}
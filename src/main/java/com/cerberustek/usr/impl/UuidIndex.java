@@ -0,0 +1,182 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.usr.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from UUIDs to non-negative longs.
+ *
+ * Keys are stored as their most and least significant bits in parallel
+ * arrays, so an entry costs three longs instead of a {@code UUID} object,
+ * a boxed value and a map node. This class is not thread safe.
+ */
+final class UuidIndex {
+
+    static final long ABSENT = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] msb;
+    private long[] lsb;
+    private long[] values;
+    private int size;
+
+    UuidIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param mostSigBits most significant bits of the key
+     * @param leastSigBits least significant bits of the key
+     * @return value or {@link #ABSENT}
+     */
+    long get(long mostSigBits, long leastSigBits) {
+        int mask = values.length - 1;
+        for (int i = hash(mostSigBits, leastSigBits) & mask; values[i] != ABSENT; i = (i + 1) & mask) {
+            if (msb[i] == mostSigBits && lsb[i] == leastSigBits)
+                return values[i];
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param mostSigBits most significant bits of the key
+     * @param leastSigBits least significant bits of the key
+     * @param value non-negative value
+     * @return previous value or {@link #ABSENT}
+     */
+    long put(long mostSigBits, long leastSigBits, long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Negative value: " + value);
+        if ((size + 1) * 2 > values.length)
+            resize(values.length * 2);
+
+        int mask = values.length - 1;
+        int i = hash(mostSigBits, leastSigBits) & mask;
+        for (; values[i] != ABSENT; i = (i + 1) & mask) {
+            if (msb[i] == mostSigBits && lsb[i] == leastSigBits) {
+                long previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        msb[i] = mostSigBits;
+        lsb[i] = leastSigBits;
+        values[i] = value;
+        size++;
+        return ABSENT;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param mostSigBits most significant bits of the key
+     * @param leastSigBits least significant bits of the key
+     * @return previous value or {@link #ABSENT}
+     */
+    long remove(long mostSigBits, long leastSigBits) {
+        int mask = values.length - 1;
+        int i = hash(mostSigBits, leastSigBits) & mask;
+        for (; values[i] != ABSENT; i = (i + 1) & mask) {
+            if (msb[i] == mostSigBits && lsb[i] == leastSigBits)
+                break;
+        }
+        long previous = values[i];
+        if (previous == ABSENT)
+            return ABSENT;
+
+        // Shift following entries of the probe sequence back into the gap
+        values[i] = ABSENT;
+        size--;
+        for (int j = (i + 1) & mask; values[j] != ABSENT; j = (j + 1) & mask) {
+            int home = hash(msb[j], lsb[j]) & mask;
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                msb[i] = msb[j];
+                lsb[i] = lsb[j];
+                values[i] = values[j];
+                values[j] = ABSENT;
+                i = j;
+            }
+        }
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Calls the visitor for every entry, in no particular order.
+     *
+     * @param visitor visitor
+     * @throws IOException if the visitor fails
+     */
+    void forEach(Visitor visitor) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != ABSENT)
+                visitor.visit(msb[i], lsb[i], values[i]);
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldMsb = msb;
+        long[] oldLsb = lsb;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != ABSENT)
+                put(oldMsb[i], oldLsb[i], oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        msb = new long[capacity];
+        lsb = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, ABSENT);
+        size = 0;
+    }
+
+    private static int hash(long mostSigBits, long leastSigBits) {
+        long h = mostSigBits * 0x9E3779B97F4A7C15L ^ leastSigBits;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    interface Visitor {
+        void visit(long mostSigBits, long leastSigBits, long value) throws IOException;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class CerberusRegistryTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    public void concurrentFirstAccessCreatesOneInstance() throws Exception {
+        int hooks = shutdownHooks();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<CerberusRegistry>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    go.await();
+                    return CerberusRegistry.getInstanceNoTerminal();
+                }));
+            }
+            ready.await();
+            go.countDown();
+
+            CerberusRegistry first = results.get(0).get();
+            for (Future<CerberusRegistry> result : results)
+                assertSame(first, result.get());
+            assertSame(first, CerberusRegistry.getInstanceNoTerminal());
+            // Every registry that is created registers a shutdown hook
+            assertEquals(hooks + 1, shutdownHooks());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int shutdownHooks() throws ReflectiveOperationException {
+        Class<?> hooks = Class.forName("java.lang.ApplicationShutdownHooks");
+        Field field = hooks.getDeclaredField("hooks");
+        field.setAccessible(true);
+        synchronized (hooks) {
+            return ((Map<?, ?>) field.get(null)).size();
+        }
+    }
+}
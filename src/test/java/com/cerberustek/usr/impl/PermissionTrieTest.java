@@ -0,0 +1,94 @@
+/*
+ * Cerberus-Registry is a service registry library and the core of the
+ * Cerberus Game project.
+ * Visit https://cerberustek.com for more details
+ * Copyright (c)  2020  Adrian Paskert
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. See the file LICENSE included with this
+ * distribution for more information.
+ * If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.cerberustek.usr.impl;
+
+import com.cerberustek.service.impl.MainService;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PermissionTrieTest {
+
+    @Test
+    public void wildcardCoversItsNode() {
+        SimplePermissionHolder holder = new SimplePermissionHolder();
+        holder.grad(MainService.PERMISSION_REGISTRY + ".*");
+
+        assertTrue(holder.hasPermission(MainService.PERMISSION_REGISTRY));
+        assertTrue(holder.hasPermission(MainService.PERMISSION_STOP));
+        assertFalse(holder.hasPermission("de.cerberus"));
+    }
+
+    @Test
+    public void exactRuleBeatsWildcardOfItsNode() {
+        SimplePermissionHolder holder = new SimplePermissionHolder();
+        holder.grad(MainService.PERMISSION_REGISTRY + ".*");
+        holder.deny(MainService.PERMISSION_REGISTRY);
+
+        assertFalse(holder.hasPermission(MainService.PERMISSION_REGISTRY));
+        assertTrue(holder.hasPermission(MainService.PERMISSION_STOP));
+    }
+
+    @Test
+    public void deeperWildcardBeatsShallowerWildcard() {
+        PermissionTrie trie = new PermissionTrie();
+        trie.grant("*");
+        trie.deny("a.b.*");
+        trie.grant("a.b.c");
+
+        assertEquals(PermissionTrie.GRANTED, trie.resolve("a"));
+        assertEquals(PermissionTrie.DENIED, trie.resolve("a.b"));
+        assertEquals(PermissionTrie.DENIED, trie.resolve("a.b.d"));
+        assertEquals(PermissionTrie.GRANTED, trie.resolve("a.b.c"));
+        assertEquals(PermissionTrie.GRANTED, trie.resolve("a.bc"));
+    }
+
+    @Test
+    public void wildcardInTheMiddleIsRejected() {
+        SimplePermissionHolder holder = new SimplePermissionHolder();
+        assertThrows(IllegalArgumentException.class, () -> holder.grad("de.*.stop"));
+        assertThrows(IllegalArgumentException.class, () -> holder.deny("*.b"));
+        assertThrows(IllegalArgumentException.class, () -> new PermissionTrie(Map.of("a.b*.*.c", true)));
+
+        assertFalse(holder.hasPermission(MainService.PERMISSION_STOP));
+        assertTrue(holder.rules().isEmpty());
+    }
+
+    @Test
+    public void ownWildcardHidesInheritedRuleOfItsNode() {
+        Map<String, Boolean> inherited = new HashMap<>();
+        inherited.put("a.b", true);
+        inherited.put("a.b.c", true);
+        inherited.put("a.bc", true);
+        PermissionGroupImpl.layer(inherited, Map.of("a.b.*", false));
+
+        assertEquals(Map.of("a.b.*", false, "a.bc", true), inherited);
+    }
+}